@@ -0,0 +1,56 @@
+package com.example.demo.chat.dto;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.example.demo.chat.service.ChatMessageEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of producing the payload bytes for one chat message in the JSON object form and in the compact
+ * array form negotiated with {@code chat-encoding:compact}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MessageEncodingBenchmark {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private ChatMessageEncoder encoder;
+    private ChatMessage message;
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        encoder = new ChatMessageEncoder(new ObjectMapper());
+        message = ChatMessage.userTargeted(IDS, AppConstants.ANIMAL_EMOJIS.get(1), AppConstants.ANIMAL_EMOJIS.get(0),
+                AppConstants.FOOD_EMOJIS.get(3), MessageSource.USER_MESSAGE);
+    }
+
+    @Benchmark
+    public byte[] json() {
+        return encoder.encode(message, sequence++).frame().getPayload();
+    }
+
+    @Benchmark
+    public byte[] compact() {
+        return CompactChatMessageWriter.write(message, sequence++);
+    }
+}
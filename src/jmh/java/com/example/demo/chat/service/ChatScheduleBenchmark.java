@@ -0,0 +1,61 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatScheduleBenchmark {
+
+    @Param({"100", "1000"})
+    int sessions;
+
+    private ChatService chatService;
+    private String[] sessionIds;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RealtimeStateService stateService = new RealtimeStateService(new MessageHistory(200, 50, 20, 50_000));
+        chatService = ChatServices.create(stateService, ChatServiceBenchmark.stubbedTemplate());
+        sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            String animal = AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size());
+            sessionIds[i] = "seed-" + i;
+            stateService.assignUser(sessionIds[i], animal);
+        }
+    }
+
+    @Benchmark
+    public void emitBroadcastSchedule() {
+        chatService.emitBroadcastSchedule();
+    }
+
+    @Benchmark
+    public void emitUserSchedule() {
+        int i = (cursor++ & Integer.MAX_VALUE) % AppConstants.ANIMAL_EMOJIS.size();
+        chatService.emitUserSchedule(AppConstants.ANIMAL_EMOJIS.get(i));
+    }
+
+    @Benchmark
+    public void emitDeviceSchedule() {
+        chatService.emitDeviceSchedule(sessionIds[(cursor++ & Integer.MAX_VALUE) % sessions]);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.SendMessageRequest;
+import com.example.demo.chat.dto.SessionRegistrationRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ChatServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ServiceState {
+
+        @Param({"100", "1000"})
+        int sessions;
+
+        RealtimeStateService stateService;
+        ChatService chatService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            stateService = new RealtimeStateService(new MessageHistory(200, 50, 20, 50_000));
+            chatService = ChatServices.create(stateService, stubbedTemplate());
+            for (int i = 0; i < sessions; i++) {
+                String animal = AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size());
+                stateService.assignUser("seed-" + i, animal);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        String sessionId;
+        SessionRegistrationRequest registration;
+        SendMessageRequest broadcast;
+        SendMessageRequest targeted;
+
+        @Setup(Level.Trial)
+        public void setUp(ServiceState serviceState, ThreadParams threadParams) {
+            int index = threadParams.getThreadIndex();
+            int animals = AppConstants.ANIMAL_EMOJIS.size();
+            sessionId = "bench-" + index;
+            registration = new SessionRegistrationRequest(AppConstants.ANIMAL_EMOJIS.get(index % animals), null, null);
+            broadcast = new SendMessageRequest(AppConstants.EVERYONE, AppConstants.FOOD_EMOJIS.get(3));
+            targeted = new SendMessageRequest(AppConstants.ANIMAL_EMOJIS.get((index + 1) % animals), AppConstants.FOOD_EMOJIS.get(4));
+            serviceState.chatService.handleRegistration(sessionId, registration);
+        }
+    }
+
+    @Benchmark
+    public void sendBroadcastMessage(ServiceState state, ClientState client) {
+        state.chatService.handleSendMessage(client.sessionId, client.broadcast);
+    }
+
+    @Benchmark
+    public void sendUserTargetedMessage(ServiceState state, ClientState client) {
+        state.chatService.handleSendMessage(client.sessionId, client.targeted);
+    }
+
+    @Benchmark
+    public void register(ServiceState state, ClientState client) {
+        state.chatService.handleRegistration(client.sessionId, client.registration);
+    }
+
+    static SimpMessagingTemplate stubbedTemplate() {
+        // Stands in for the brokerChannel: payloads are mapped and converted to JSON, then dropped.
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> true);
+        template.setMessageConverter(new MappingJackson2MessageConverter());
+        return template;
+    }
+
+    @Threads(1)
+    public static class OneThread extends ChatServiceBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ChatServiceBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends ChatServiceBenchmark {
+    }
+}
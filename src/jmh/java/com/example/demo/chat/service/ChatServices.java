@@ -0,0 +1,48 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.cluster.ClusterCoordinator;
+import com.example.demo.chat.model.MessageIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Builds a standalone {@link ChatService} for benchmarks with the schedule and presence settings the app
+ * ships in {@code application.properties}.
+ */
+final class ChatServices {
+
+    private ChatServices() {
+    }
+
+    static ChatService create(RealtimeStateService stateService, SimpMessagingTemplate messagingTemplate) {
+        Properties properties;
+        try {
+            properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        return new ChatService(stateService, messagingTemplate, new ChatMessageEncoder(objectMapper), new ChatCatalog(objectMapper),
+                ClusterCoordinator.standalone(), new MessageIds(0),
+                millis(properties, "app.schedule.user-ms"),
+                millis(properties, "app.schedule.user-initial-ms"),
+                millis(properties, "app.schedule.device-ms"),
+                millis(properties, "app.schedule.device-initial-ms"),
+                millis(properties, "app.schedule.tick-ms"),
+                millis(properties, "app.presence.full-ms"));
+    }
+
+    private static long millis(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalStateException(key + " is missing from application.properties");
+        }
+        return Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.ChatMessagePayload;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageAudience;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating a message and mapping it to its payload, as every scheduled emission does. {@code uuidAndInstant}
+ * reproduces the former path (a {@code SecureRandom} UUID, {@code Instant.now()} and {@code toString()} per
+ * message); run with {@code -prof gc} to compare allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class MessageCreationBenchmark {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private static final String SENDER = AppConstants.SYSTEM_SENDER;
+    private static final String CONTENT = AppConstants.FOOD_EMOJIS.get(3);
+
+    private final ChatMessageEncoder encoder = new ChatMessageEncoder(new ObjectMapper());
+
+    @Benchmark
+    public ChatMessagePayload sortableIdAndCoarseClock() {
+        return encoder.toPayload(ChatMessage.broadcast(IDS, SENDER, CONTENT, MessageSource.SYSTEM_BROADCAST), 1);
+    }
+
+    @Benchmark
+    public ChatMessagePayload uuidAndInstant() {
+        Instant timestamp = Instant.now();
+        return new ChatMessagePayload(UUID.randomUUID().toString(), timestamp.toString(), SENDER, AppConstants.EVERYONE,
+                MessageAudience.EVERYONE.name(), MessageSource.SYSTEM_BROADCAST.name(), CONTENT, 1);
+    }
+
+    @Threads(1)
+    public static class OneThread extends MessageCreationBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends MessageCreationBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends MessageCreationBenchmark {
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class RealtimeStateServiceBenchmark {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    @State(Scope.Benchmark)
+    public static class ServiceState {
+
+        @Param({"100", "1000"})
+        int sessions;
+
+        RealtimeStateService service;
+        EncodedChatMessage broadcast;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ChatMessageEncoder encoder = new ChatMessageEncoder(new ObjectMapper());
+            service = new RealtimeStateService(new MessageHistory(200, 50, 20, 50_000));
+            for (int i = 0; i < sessions; i++) {
+                String animal = AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size());
+                service.assignUser("seed-" + i, animal);
+            }
+            for (int i = 0; i < 500; i++) {
+                String animal = AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size());
+                service.appendMessage(encoder.encode(ChatMessage.userTargeted(IDS, "SYSTEM", animal, AppConstants.DEFAULT_SEND_ME, MessageSource.SYSTEM_USER_SCHEDULE)));
+                service.appendMessage(encoder.encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "seed-" + (i % sessions), AppConstants.DEFAULT_SEND_HERE, MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+            }
+            broadcast = encoder.encode(ChatMessage.broadcast(IDS, "SYSTEM", AppConstants.DEFAULT_SEND_US, MessageSource.SYSTEM_BROADCAST));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClientState {
+
+        String sessionId;
+        String userEmoji;
+        String readerSessionId;
+
+        @Setup(Level.Trial)
+        public void setUp(ServiceState serviceState, ThreadParams threadParams) {
+            int index = threadParams.getThreadIndex();
+            sessionId = "bench-" + index;
+            userEmoji = AppConstants.ANIMAL_EMOJIS.get(index % AppConstants.ANIMAL_EMOJIS.size());
+            readerSessionId = "seed-" + (index % serviceState.sessions);
+        }
+    }
+
+    @Benchmark
+    public void appendMessage(ServiceState state) {
+        state.service.appendMessage(state.broadcast);
+    }
+
+    @Benchmark
+    public List<EncodedChatMessage> recentMessagesFor(ServiceState state, ClientState client) {
+        return state.service.recentMessagesFor(client.userEmoji, client.readerSessionId, 10);
+    }
+
+    @Benchmark
+    public void assignUserAndRemoveSession(ServiceState state, ClientState client) {
+        state.service.assignUser(client.sessionId, client.userEmoji);
+        state.service.removeSession(client.sessionId);
+    }
+
+    @Benchmark
+    public RealtimeStateService.SessionState updateSendHere(ServiceState state, ClientState client) {
+        return state.service.updateSendHere(client.readerSessionId, AppConstants.DEFAULT_SEND_HERE);
+    }
+
+    @Benchmark
+    public List<String> onlineUsers(ServiceState state) {
+        return state.service.onlineUsers();
+    }
+
+    @Threads(1)
+    public static class OneThread extends RealtimeStateServiceBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends RealtimeStateServiceBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends RealtimeStateServiceBenchmark {
+    }
+}
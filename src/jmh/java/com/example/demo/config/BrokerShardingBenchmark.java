@@ -0,0 +1,105 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time from publishing one broadcast on the broker channel until every subscribed session's copy has been
+ * handed to the client outbound channel. {@code shards=1} is the stock simple broker, which does the whole
+ * fan-out on the publishing thread; higher values use {@link ShardedBrokerMessageHandler}, which needs as
+ * many free cores as shards to come out ahead. The outbound channel only counts deliveries, so frame
+ * encoding and socket writes are not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerShardingBenchmark {
+
+    @Param({"1", "2", "4"})
+    int shards;
+
+    @Param({"1000", "10000"})
+    int sessions;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private ExecutorSubscribableChannel brokerChannel;
+    private AbstractBrokerMessageHandler broker;
+    private Message<byte[]> broadcast;
+    private long expected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        brokerChannel = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                delivered.incrementAndGet();
+            }
+        });
+        SimpleBrokerMessageHandler simple = new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic"));
+        simple.setSubscriptionRegistry(new ExactMatchSubscriptionRegistry());
+        broker = shards == 1 ? simple
+                : new ShardedBrokerMessageHandler(simple, shards, 10_000, ShardedBrokerMessageHandler.Overflow.BLOCK,
+                        ExactMatchSubscriptionRegistry::new, new SimpleMeterRegistry());
+        broker.start();
+        for (int i = 0; i < sessions; i++) {
+            clientInbound.send(frame(SimpMessageType.CONNECT, "session-" + i, null));
+            clientInbound.send(frame(SimpMessageType.SUBSCRIBE, "session-" + i, "/topic/messages"));
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/messages");
+        broadcast = MessageBuilder.createMessage("{\"content\":\"🍕\"}".getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public long broadcast() {
+        expected += sessions;
+        brokerChannel.send(broadcast);
+        while (delivered.get() < expected) {
+            Thread.yield();
+        }
+        return expected;
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId("0");
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.service.MessageHistory;
+import com.example.demo.chat.service.RealtimeStateService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans one task per session out to a channel executor, the way a broadcast reaches clientOutbound. Each
+ * task reads session state and then parks for {@code writeMicros} to stand in for a blocking socket write.
+ * {@code platform} is Spring's default channel pool; {@code virtual} needs a Java 21 runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChannelExecutorBenchmark {
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    @Param({"1000", "10000"})
+    int sessions;
+
+    @Param({"50"})
+    long writeMicros;
+
+    private RealtimeStateService stateService;
+    private Executor executor;
+    private String[] sessionIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stateService = new RealtimeStateService(new MessageHistory(200, 50, 20, 50_000));
+        sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = "seed-" + i;
+            stateService.assignUser(sessionIds[i], AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size()));
+        }
+        if ("virtual".equals(threads)) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("clientOutboundChannel-");
+            virtual.setVirtualThreads(true);
+            executor = virtual;
+        } else {
+            // Same sizing as Spring's default channel executor (TaskExecutorRegistration)
+            ThreadPoolTaskExecutor platform = new ThreadPoolTaskExecutor();
+            platform.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+            platform.setAllowCoreThreadTimeOut(true);
+            platform.setThreadNamePrefix("clientOutboundChannel-");
+            platform.initialize();
+            executor = platform;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor instanceof ThreadPoolTaskExecutor platform) {
+            platform.shutdown();
+        } else if (executor instanceof SimpleAsyncTaskExecutor virtual) {
+            virtual.close();
+        }
+    }
+
+    @Benchmark
+    public void fanOut() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(sessionIds.length);
+        long writeNanos = TimeUnit.MICROSECONDS.toNanos(writeMicros);
+        for (String sessionId : sessionIds) {
+            executor.execute(() -> {
+                stateService.findSession(sessionId);
+                LockSupport.parkNanos(writeNanos);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
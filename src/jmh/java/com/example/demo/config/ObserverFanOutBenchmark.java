@@ -0,0 +1,168 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.example.demo.chat.service.ChatMessageEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering one broadcast to {@code watchers} passive clients. {@code stompSubscribers} runs the
+ * simple broker with the app's registry and hands each per-session copy to Spring's STOMP protocol handler,
+ * which encodes a frame per session. {@code sseObservers} runs the {@link ObserverFeed}, which frames the
+ * event once and queues the same bytes for every watcher. Both stop at the socket: sessions and output
+ * streams discard what they are given, and the outbound channel executor hop STOMP adds is left out.
+ * Divide by {@code watchers} for the cost per watcher; add {@code -prof gc} for allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObserverFanOutBenchmark {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    @Param({"100", "1000", "10000"})
+    int watchers;
+
+    private SimpleBrokerMessageHandler broker;
+    private ObserverFeed feed;
+    private Message<byte[]> broadcast;
+    private long discarded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ChatMessageEncoder encoder = new ChatMessageEncoder(new ObjectMapper());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(ObserverFeed.MESSAGES);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        broadcast = MessageBuilder.createMessage(
+                encoder.encode(ChatMessage.broadcast(IDS, AppConstants.SYSTEM_SENDER, AppConstants.FOOD_EMOJIS.get(2), MessageSource.SYSTEM_BROADCAST), 42)
+                        .frame().getPayload(),
+                accessor.getMessageHeaders());
+
+        StompSubProtocolHandler stomp = new StompSubProtocolHandler();
+        Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        clientOutbound.subscribe(message -> stomp.handleMessageToClient(
+                sessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders())), message));
+        broker = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutbound, new ExecutorSubscribableChannel(),
+                List.of("/topic"));
+        broker.setSubscriptionRegistry(new ExactMatchSubscriptionRegistry());
+        broker.start();
+        for (int i = 0; i < watchers; i++) {
+            String sessionId = "session-" + i;
+            sessions.put(sessionId, discardingSession(sessionId));
+            SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            subscribe.setSessionId(sessionId);
+            subscribe.setSubscriptionId("0");
+            subscribe.setDestination(ObserverFeed.MESSAGES);
+            broker.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+        }
+
+        feed = new ObserverFeed(new ObserverProperties(true, "/observe", 1024, ObserverProperties.Overflow.DROP, Duration.ofSeconds(3)),
+                new ObjectMapper(), new SimpleMeterRegistry(), () -> new OnlineUsersPayload(List.of(), 0));
+        feed.start();
+        for (int i = 0; i < watchers; i++) {
+            DiscardingOutputStream out = new DiscardingOutputStream();
+            ObserverFeed.Observer observer = feed.observer(out, () -> {
+            });
+            out.setWriteListener(observer);
+            feed.subscribe(observer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.stop();
+        feed.stop();
+    }
+
+    @Benchmark
+    public void stompSubscribers() {
+        broker.handleMessage(broadcast);
+    }
+
+    @Benchmark
+    public void sseObservers() {
+        feed.preSend(broadcast, null);
+    }
+
+    private WebSocketSession discardingSession(String id) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "getAttributes" -> attributes;
+                    case "sendMessage" -> {
+                        discarded += ((WebSocketMessage<?>) args[0]).getPayloadLength();
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "session " + id;
+                    default -> null;
+                });
+    }
+
+    private final class DiscardingOutputStream extends ServletOutputStream {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+        }
+
+        @Override
+        public void write(int b) {
+            discarded++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            discarded += length;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.AppConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Spring's {@link DefaultSubscriptionRegistry} with {@link ExactMatchSubscriptionRegistry}
+ * for the destinations this app actually uses: every session holds the two broadcast topics, its
+ * user topics and its two device topics.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class SubscriptionRegistryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class RegistryState {
+
+        @Param({"default", "exact"})
+        String registry;
+
+        @Param({"1000", "20000"})
+        int sessions;
+
+        SubscriptionRegistry subscriptions;
+        Message<byte[]>[] deviceMessages;
+        Message<byte[]>[] userMessages;
+        Message<byte[]> broadcastMessage;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setUp() {
+            subscriptions = "exact".equals(registry) ? new ExactMatchSubscriptionRegistry() : new DefaultSubscriptionRegistry();
+            deviceMessages = new Message[sessions];
+            for (int i = 0; i < sessions; i++) {
+                String sessionId = "session-" + i;
+                String user = AppConstants.ANIMAL_EMOJIS.get(i % AppConstants.ANIMAL_EMOJIS.size());
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "0", "/topic/messages"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "1", "/topic/online"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "2", "/topic/settings/global"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "3", "/topic/device/" + sessionId + "/messages"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "4", "/topic/device/" + sessionId + "/control"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "5", "/topic/user/" + user + "/messages"));
+                subscriptions.registerSubscription(frame(SimpMessageType.SUBSCRIBE, sessionId, "6", "/topic/settings/user/" + user));
+                deviceMessages[i] = frame(SimpMessageType.MESSAGE, null, null, "/topic/device/" + sessionId + "/messages");
+            }
+            userMessages = new Message[AppConstants.ANIMAL_EMOJIS.size()];
+            for (int i = 0; i < userMessages.length; i++) {
+                userMessages[i] = frame(SimpMessageType.MESSAGE, null, null, "/topic/user/" + AppConstants.ANIMAL_EMOJIS.get(i) + "/messages");
+            }
+            broadcastMessage = frame(SimpMessageType.MESSAGE, null, null, "/topic/messages");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ChurnState {
+
+        Message<byte[]> subscribe;
+        Message<byte[]> unsubscribe;
+
+        @Setup(Level.Trial)
+        public void setUp(ThreadParams threadParams) {
+            String sessionId = "churn-" + threadParams.getThreadIndex();
+            subscribe = frame(SimpMessageType.SUBSCRIBE, sessionId, "9", "/topic/device/" + sessionId + "/control");
+            unsubscribe = frame(SimpMessageType.UNSUBSCRIBE, sessionId, "9", null);
+        }
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> resolveDeviceDestination(RegistryState state) {
+        Message<byte[]>[] messages = state.deviceMessages;
+        return state.subscriptions.findSubscriptions(messages[ThreadLocalRandom.current().nextInt(messages.length)]);
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> resolveUserDestination(RegistryState state) {
+        Message<byte[]>[] messages = state.userMessages;
+        return state.subscriptions.findSubscriptions(messages[ThreadLocalRandom.current().nextInt(messages.length)]);
+    }
+
+    @Benchmark
+    public MultiValueMap<String, String> resolveBroadcastDestination(RegistryState state) {
+        return state.subscriptions.findSubscriptions(state.broadcastMessage);
+    }
+
+    @Benchmark
+    public void subscribeUnsubscribe(RegistryState state, ChurnState churn) {
+        state.subscriptions.registerSubscription(churn.subscribe);
+        state.subscriptions.unregisterSubscription(churn.unsubscribe);
+    }
+
+    static Message<byte[]> frame(SimpMessageType type, String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    @Threads(1)
+    public static class OneThread extends SubscriptionRegistryBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends SubscriptionRegistryBenchmark {
+    }
+
+    @Threads(16)
+    public static class SixteenThreads extends SubscriptionRegistryBenchmark {
+    }
+}
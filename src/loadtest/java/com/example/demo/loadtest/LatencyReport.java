@@ -0,0 +1,102 @@
+package com.example.demo.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies (in microseconds) and delivered frame counts per topic family, plus registration times.
+ * Recording is safe from any client thread; {@link #reset()} discards the family figures recorded so far,
+ * e.g. at the end of the warmup.
+ */
+final class LatencyReport {
+
+    static final String REGISTRATION = "registration";
+
+    private final Recorder registrations = new Recorder(3);
+    private final Map<String, Recorder> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> frames = new ConcurrentHashMap<>();
+
+    void recordLatency(String family, long micros) {
+        latencies.computeIfAbsent(family, key -> new Recorder(3)).recordValue(Math.max(0, micros));
+    }
+
+    void recordRegistration(long micros) {
+        registrations.recordValue(Math.max(0, micros));
+    }
+
+    void countFrame(String family) {
+        frames.computeIfAbsent(family, key -> new LongAdder()).increment();
+    }
+
+    void reset() {
+        latencies.values().forEach(Recorder::reset);
+        frames.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Writes one {@code <family>.hgrm} percentile distribution (milliseconds) per family and a
+     * {@code summary.txt}, and returns the summary rows.
+     */
+    List<Row> write(Path directory, Duration elapsed) {
+        Map<String, Histogram> histograms = new TreeMap<>();
+        latencies.forEach((family, recorder) -> histograms.put(family, recorder.getIntervalHistogram()));
+        histograms.put(REGISTRATION, registrations.getIntervalHistogram());
+        List<Row> rows = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                    entry.getValue().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+            TreeMap<String, Long> counts = new TreeMap<>();
+            frames.forEach((family, count) -> counts.put(family, count.sum()));
+            histograms.keySet().forEach(family -> counts.putIfAbsent(family, 0L));
+            double seconds = Math.max(1, elapsed.toMillis()) / 1000.0;
+            counts.forEach((family, count) -> rows.add(Row.of(family, histograms.get(family),
+                    REGISTRATION.equals(family) ? Double.NaN : count / seconds)));
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve("summary.txt")))) {
+                out.println(Row.HEADER);
+                rows.forEach(row -> out.println(row.format()));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write the report to " + directory, ex);
+        }
+        return rows;
+    }
+
+    record Row(String family, long count, double p50, double p99, double p999, double max, double framesPerSecond) {
+
+        static final String HEADER = "%-14s %10s %10s %10s %10s %10s %12s".formatted(
+                "family", "samples", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "frames/s");
+
+        static Row of(String family, Histogram histogram, double framesPerSecond) {
+            if (histogram == null || histogram.getTotalCount() == 0) {
+                return new Row(family, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, framesPerSecond);
+            }
+            return new Row(family, histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0,
+                    histogram.getValueAtPercentile(99.9) / 1000.0,
+                    histogram.getMaxValue() / 1000.0,
+                    framesPerSecond);
+        }
+
+        String format() {
+            return "%-14s %10d %10.3f %10.3f %10.3f %10.3f %12.1f".formatted(family, count, p50, p99, p999, max, framesPerSecond);
+        }
+    }
+}
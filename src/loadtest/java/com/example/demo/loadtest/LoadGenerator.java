@@ -0,0 +1,367 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.chat.AppConstants;
+import com.example.demo.loadtest.LoadOptions.Operation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.WebSocketContainer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts the application on a random port and drives it over real STOMP-over-WebSocket sessions.
+ * <p>
+ * Sessions are opened and registered first, one identity at a time per animal so that the settings frame
+ * the server sends right after a snapshot can be attributed to the session that asked for it; that round
+ * trip is the registration time. Driver threads then send a weighted mix of operations at a fixed rate,
+ * first for the warmup and then for the measured duration. Every chat message a session receives is timed
+ * from its server timestamp (publish) to its arrival (receive), per topic family.
+ */
+public final class LoadGenerator {
+
+    private static final String[] APP_DEFAULTS = {
+            "server.port=0",
+            "spring.main.banner-mode=off",
+            "logging.level.root=warn",
+            // Every session shares one of a few identities, so the per-user limits would throttle the load itself.
+            "app.rate-limit.enabled=false",
+            "app.diagnostics.enabled=false"
+    };
+    private static final Duration REGISTRATION_TIMEOUT = Duration.ofSeconds(5);
+
+    private final LoadOptions options;
+    private final LatencyReport report = new LatencyReport();
+    private final LongAdder registrationTimeouts = new LongAdder();
+    private final LongAdder failedSends = new LongAdder();
+
+    LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> own = new ArrayList<>();
+        List<String> application = new ArrayList<>();
+        for (String arg : args) {
+            (arg.startsWith("--") ? application : own).add(arg);
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(own.toArray(String[]::new));
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.exit(new LoadGenerator(options).run(application.toArray(String[]::new)));
+    }
+
+    int run(String[] applicationArgs) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .properties(APP_DEFAULTS)
+                .run(applicationArgs)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+            heartbeats.setThreadNamePrefix("loadtest-heartbeat-");
+            heartbeats.initialize();
+            WebSocketStompClient stompClient = stompClient(heartbeats);
+            try {
+                long started = System.nanoTime();
+                List<LoadClient> clients = open(stompClient, port);
+                System.out.printf("Registered %d sessions in %d ms (%d timed out)%n", clients.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), registrationTimeouts.sum());
+
+                drive(clients, options.warmup());
+                report.reset();
+                long measured = System.nanoTime();
+                long sent = drive(clients, options.duration());
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - measured);
+
+                List<LatencyReport.Row> rows = report.write(options.reportDirectory(), elapsed);
+                MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+                System.out.printf("%d operations in %d ms (%.1f/s), %d failed sends, %.0f frames shed by the server%n",
+                        sent, elapsed.toMillis(), sent * 1000.0 / Math.max(1, elapsed.toMillis()), failedSends.sum(),
+                        meterRegistry.find("stomp.outbound.dropped").counters().stream().mapToDouble(Counter::count).sum());
+                System.out.println(LatencyReport.Row.HEADER);
+                rows.forEach(row -> System.out.println(row.format()));
+                System.out.println("Histograms written to " + options.reportDirectory().toAbsolutePath());
+
+                clients.forEach(LoadClient::disconnect);
+                return gate(rows);
+            } finally {
+                stompClient.stop();
+                heartbeats.shutdown();
+            }
+        }
+    }
+
+    private int gate(List<LatencyReport.Row> rows) {
+        if (options.failP99Millis() <= 0) {
+            return 0;
+        }
+        int status = 0;
+        for (LatencyReport.Row row : rows) {
+            if (row.p99() > options.failP99Millis()) {
+                System.out.printf("FAIL %s p99 %.3f ms is above %.3f ms%n", row.family(), row.p99(), options.failP99Millis());
+                status = 1;
+            }
+        }
+        return status;
+    }
+
+    private WebSocketStompClient stompClient(ThreadPoolTaskScheduler heartbeats) {
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        // Snapshots carry the recent history, well past the container's 8 KB default.
+        container.setDefaultMaxTextMessageBufferSize(1 << 20);
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient(container));
+        stompClient.setInboundMessageSizeLimit(1 << 20);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper());
+        stompClient.setMessageConverter(converter);
+        // Heartbeat like the browser client does, so long runs are not reaped as idle.
+        stompClient.setTaskScheduler(heartbeats);
+        stompClient.setDefaultHeartbeat(new long[]{10_000, 10_000});
+        return stompClient;
+    }
+
+    private List<LoadClient> open(WebSocketStompClient stompClient, int port) throws Exception {
+        List<String> identities = AppConstants.ANIMAL_EMOJIS;
+        ExecutorService workers = Executors.newFixedThreadPool(identities.size());
+        try {
+            List<Future<List<LoadClient>>> opened = new ArrayList<>();
+            for (int worker = 0; worker < identities.size(); worker++) {
+                String me = identities.get(worker);
+                int count = options.sessions() / identities.size() + (worker < options.sessions() % identities.size() ? 1 : 0);
+                opened.add(workers.submit(() -> {
+                    List<LoadClient> clients = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        LoadClient client = new LoadClient(me);
+                        client.connect(stompClient, port);
+                        client.register();
+                        clients.add(client);
+                    }
+                    return clients;
+                }));
+            }
+            List<LoadClient> clients = new ArrayList<>(options.sessions());
+            for (Future<List<LoadClient>> future : opened) {
+                clients.addAll(future.get());
+            }
+            return clients;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends the operation mix for {@code duration} and returns how many operations were sent. Each driver
+     * owns every n-th session, since a STOMP session must not be written to from two threads at once.
+     */
+    private long drive(List<LoadClient> clients, Duration duration) throws Exception {
+        if (duration.isZero()) {
+            return 0;
+        }
+        int drivers = Math.min(options.drivers(), clients.size());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * drivers / options.rate();
+        long deadline = System.nanoTime() + duration.toNanos();
+        Operation[] operations = weighted(options.mix());
+        ExecutorService executor = Executors.newFixedThreadPool(drivers);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int driver = 0; driver < drivers; driver++) {
+                List<LoadClient> owned = new ArrayList<>();
+                for (int i = driver; i < clients.size(); i += drivers) {
+                    owned.add(clients.get(i));
+                }
+                results.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long sent = 0;
+                    // Sends follow a fixed schedule instead of waiting on each other, so a stall shows up as
+                    // latency rather than as a lower request rate.
+                    for (long next = System.nanoTime(); next < deadline; next += intervalNanos) {
+                        long wait = next - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        owned.get(random.nextInt(owned.size())).perform(operations[random.nextInt(operations.length)], random);
+                        sent++;
+                    }
+                    return sent;
+                }));
+            }
+            long sent = 0;
+            for (Future<Long> result : results) {
+                sent += result.get();
+            }
+            return sent;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Operation[] weighted(Map<Operation, Integer> mix) {
+        List<Operation> operations = new ArrayList<>();
+        mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                operations.add(operation);
+            }
+        });
+        return operations.toArray(Operation[]::new);
+    }
+
+    private static String randomFood(ThreadLocalRandom random) {
+        return AppConstants.FOOD_EMOJIS.get(random.nextInt(AppConstants.FOOD_EMOJIS.size()));
+    }
+
+    private final class LoadClient {
+
+        private final String me;
+        private StompSession session;
+        private volatile CountDownLatch registered;
+
+        LoadClient(String me) {
+            this.me = me;
+        }
+
+        void connect(WebSocketStompClient stompClient, int port) throws Exception {
+            StompHeaders connectHeaders = new StompHeaders();
+            if (options.compact()) {
+                connectHeaders.add("chat-encoding", "compact");
+            }
+            session = stompClient.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                    new StompSessionHandlerAdapter() {
+                    }).get(10, TimeUnit.SECONDS);
+            session.subscribe("/topic/messages", chatMessages("messages"));
+            session.subscribe("/topic/user/" + me + "/messages", chatMessages("user"));
+            session.subscribe("/topic/online", frames("online", null));
+            session.subscribe("/topic/settings/global", frames("settings", null));
+            session.subscribe("/topic/settings/user/" + me, frames("settings", () -> {
+                CountDownLatch latch = registered;
+                if (latch != null) {
+                    latch.countDown();
+                }
+            }));
+        }
+
+        /**
+         * Times registration up to the user settings frame that follows the snapshot. The device control
+         * topic that carries the snapshot itself cannot be subscribed to: clients do not learn their
+         * session id.
+         */
+        void register() throws InterruptedException {
+            CountDownLatch latch = new CountDownLatch(1);
+            registered = latch;
+            long started = System.nanoTime();
+            session.send("/app/session/register", Map.of("me", me, "sendMe", randomFood(ThreadLocalRandom.current())));
+            if (latch.await(REGISTRATION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                report.recordRegistration(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+            } else {
+                registrationTimeouts.increment();
+            }
+            registered = null;
+        }
+
+        void perform(Operation operation, ThreadLocalRandom random) {
+            try {
+                switch (operation) {
+                    case BROADCAST -> session.send("/app/message/send", Map.of("target", AppConstants.EVERYONE, "content", randomFood(random)));
+                    case DIRECT -> session.send("/app/message/send", Map.of("target", otherIdentity(random), "content", randomFood(random)));
+                    case SEND_ME -> session.send("/app/settings/send-me", Map.of("value", randomFood(random)));
+                    case SEND_HERE -> session.send("/app/settings/send-here", Map.of("value", randomFood(random)));
+                    case SEND_US -> session.send("/app/settings/send-us", Map.of("value", randomFood(random)));
+                }
+            } catch (RuntimeException ex) {
+                failedSends.increment();
+            }
+        }
+
+        void disconnect() {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        }
+
+        private String otherIdentity(ThreadLocalRandom random) {
+            List<String> identities = AppConstants.ANIMAL_EMOJIS;
+            String target = identities.get(random.nextInt(identities.size() - 1));
+            return target.equals(me) ? identities.get(identities.size() - 1) : target;
+        }
+
+        private StompFrameHandler chatMessages(String family) {
+            return new JsonFrameHandler() {
+                @Override
+                void handle(JsonNode payload) {
+                    report.countFrame(family);
+                    report.recordLatency(family, publishToReceiveMicros(payload));
+                }
+            };
+        }
+
+        private StompFrameHandler frames(String family, Runnable onFrame) {
+            return new JsonFrameHandler() {
+                @Override
+                void handle(JsonNode payload) {
+                    report.countFrame(family);
+                    if (onFrame != null) {
+                        onFrame.run();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Compact messages only carry epoch milliseconds; JSON ones carry the full server timestamp.
+     */
+    private static long publishToReceiveMicros(JsonNode payload) {
+        if (payload.isArray()) {
+            return (System.currentTimeMillis() - payload.get(1).asLong()) * 1000;
+        }
+        return ChronoUnit.MICROS.between(Instant.parse(payload.get("timestamp").asText()), Instant.now());
+    }
+
+    private abstract static class JsonFrameHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return JsonNode.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            handle((JsonNode) payload);
+        }
+
+        abstract void handle(JsonNode payload);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Load generator settings, given as {@code key=value} arguments.
+ */
+record LoadOptions(
+        int sessions,
+        int rate,
+        int drivers,
+        Duration warmup,
+        Duration duration,
+        Map<Operation, Integer> mix,
+        boolean compact,
+        Path reportDirectory,
+        double failP99Millis
+) {
+
+    static final String USAGE = """
+            sessions=1000       STOMP sessions to open and register
+            rate=100            client operations per second, across all sessions
+            drivers=4           threads sending operations
+            warmup=10s          load before measuring starts
+            duration=30s        measured load
+            mix=broadcast:70,direct:20,send-me:5,send-here:4,send-us:1
+                                relative weights of the operations
+            encoding=json       json or compact
+            report=target/loadtest
+                                where the .hgrm files and summary.txt are written
+            fail-p99-ms=0       exit with status 1 when any p99 is above this (0 disables)
+            Arguments starting with -- are passed to the application, e.g. --app.broker.exact-match-registry=false
+            """;
+
+    enum Operation {
+        BROADCAST("broadcast"),
+        DIRECT("direct"),
+        SEND_ME("send-me"),
+        SEND_HERE("send-here"),
+        SEND_US("send-us");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation '" + key + "'");
+        }
+    }
+
+    static LoadOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value but got '" + arg + "'");
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        LoadOptions options = new LoadOptions(
+                Integer.parseInt(values.getOrDefault("sessions", "1000")),
+                Integer.parseInt(values.getOrDefault("rate", "100")),
+                Integer.parseInt(values.getOrDefault("drivers", "4")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "30s")),
+                parseMix(values.getOrDefault("mix", "broadcast:70,direct:20,send-me:5,send-here:4,send-us:1")),
+                switch (values.getOrDefault("encoding", "json")) {
+                    case "json" -> false;
+                    case "compact" -> true;
+                    default -> throw new IllegalArgumentException("encoding must be json or compact");
+                },
+                Path.of(values.getOrDefault("report", "target/loadtest")),
+                Double.parseDouble(values.getOrDefault("fail-p99-ms", "0"))
+        );
+        values.keySet().removeAll(Set.of("sessions", "rate", "drivers", "warmup", "duration", "mix", "encoding",
+                "report", "fail-p99-ms"));
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (options.sessions < 1 || options.rate < 1 || options.drivers < 1) {
+            throw new IllegalArgumentException("sessions, rate and drivers must be positive");
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight but got '" + entry + "'");
+            }
+            weights.put(Operation.of(parts[0]), Integer.parseInt(parts[1]));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one positive weight");
+        }
+        return weights;
+    }
+}
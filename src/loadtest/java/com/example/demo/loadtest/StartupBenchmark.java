@@ -0,0 +1,258 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.chat.AppConstants;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Starts the packaged application in a fresh JVM, again and again, and times how long it takes until a
+ * client's STOMP CONNECT is answered with CONNECTED. Each run also times the first registration round trip
+ * and a second session's, to show what the first connection still pays once the port is open.
+ * <p>
+ * The baseline is the Spring Boot jar as built by {@code package}; the fast mode is the extracted layout the
+ * {@code fast-startup} profile leaves in {@code target/fast-startup}, started with its CDS archive and the
+ * AOT-generated context. Either mode is skipped when its files are missing.
+ */
+public final class StartupBenchmark {
+
+    static final String USAGE = """
+            runs=5              JVM starts per mode
+            jar=target/demo-0.0.1-SNAPSHOT.jar
+                                the Spring Boot jar started as the baseline
+            fast=target/fast-startup
+                                application.jar and application.jsa written by the fast-startup profile
+            timeout=60s         give up on a run after this long
+            Arguments starting with -- are passed to the application
+            """;
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+
+    private final int runs;
+    private final Duration timeout;
+    private final List<String> applicationArgs;
+    private final WebSocketStompClient stompClient;
+
+    private StartupBenchmark(int runs, Duration timeout, List<String> applicationArgs) {
+        this.runs = runs;
+        this.timeout = timeout;
+        this.applicationArgs = applicationArgs;
+        this.stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        this.stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> values = new HashMap<>();
+        List<String> application = new ArrayList<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (arg.startsWith("--")) {
+                application.add(arg);
+            } else if (separator > 0) {
+                values.put(arg.substring(0, separator), arg.substring(separator + 1));
+            } else {
+                System.err.println("Expected key=value but got '" + arg + "'");
+                System.err.print(USAGE);
+                System.exit(2);
+            }
+        }
+        Path jar = Path.of(values.getOrDefault("jar", "target/demo-0.0.1-SNAPSHOT.jar"));
+        Path fast = Path.of(values.getOrDefault("fast", "target/fast-startup"));
+        StartupBenchmark benchmark = new StartupBenchmark(Integer.parseInt(values.getOrDefault("runs", "5")),
+                DurationStyle.detectAndParse(values.getOrDefault("timeout", "60s")), application);
+        values.keySet().removeAll(Set.of("runs", "jar", "fast", "timeout"));
+        if (!values.isEmpty()) {
+            System.err.println("Unknown options " + values.keySet());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        List<Mode> modes = new ArrayList<>();
+        if (Files.isRegularFile(jar)) {
+            modes.add(new Mode("baseline", jar.toAbsolutePath().getParent(), List.of("-jar", jar.toAbsolutePath().toString())));
+        } else {
+            System.out.println("Skipping baseline: " + jar + " not found, run ./mvnw package first");
+        }
+        Path archive = fast.resolve("application.jsa");
+        if (Files.isRegularFile(archive)) {
+            modes.add(new Mode("fast-startup", fast.toAbsolutePath(), List.of("-XX:SharedArchiveFile=application.jsa",
+                    "-Dspring.aot.enabled=true", "-jar", "application.jar")));
+        } else {
+            System.out.println("Skipping fast-startup: " + archive + " not found, run ./mvnw -Pfast-startup package first");
+        }
+        if (modes.isEmpty()) {
+            System.exit(1);
+        }
+
+        List<Summary> summaries = new ArrayList<>();
+        for (Mode mode : modes) {
+            summaries.add(benchmark.measure(mode));
+        }
+        System.out.println();
+        System.out.println(Summary.HEADER);
+        summaries.forEach(summary -> System.out.println(summary.format()));
+        if (summaries.size() == 2) {
+            System.out.printf("fast-startup reaches CONNECTED in %.0f%% of the baseline time (median)%n",
+                    100.0 * summaries.get(1).connected() / summaries.get(0).connected());
+        }
+    }
+
+    private Summary measure(Mode mode) throws Exception {
+        List<Run> results = new ArrayList<>();
+        for (int i = 1; i <= runs; i++) {
+            Run run = run(mode);
+            System.out.printf("%-12s run %d: listening %d ms, CONNECTED %d ms, first register %d ms, second register %d ms%n",
+                    mode.name(), i, run.listening(), run.connected(), run.firstRegister(), run.secondRegister());
+            results.add(run);
+        }
+        return new Summary(mode.name(), median(results, Run::listening), median(results, Run::connected),
+                results.stream().mapToLong(Run::connected).min().orElseThrow(),
+                median(results, Run::firstRegister), median(results, Run::secondRegister));
+    }
+
+    private Run run(Mode mode) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(mode.jvmArgs());
+        command.add("--server.port=" + port);
+        command.add("--spring.main.banner-mode=off");
+        command.addAll(applicationArgs);
+        Path log = Files.createTempFile("startup-" + mode.name() + "-", ".log");
+
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(mode.directory().toFile())
+                .redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            long deadline = started + timeout.toNanos();
+            long listening = awaitPort(process, port, deadline) - started;
+            StompSession first = awaitConnected(port, deadline);
+            long connected = System.nanoTime() - started;
+            long firstRegister = register(first, AppConstants.ANIMAL_EMOJIS.get(0));
+            StompSession second = stompClient.connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {
+            }).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            long secondRegister = register(second, AppConstants.ANIMAL_EMOJIS.get(1));
+            first.disconnect();
+            second.disconnect();
+            Files.deleteIfExists(log);
+            return new Run(millis(listening), millis(connected), millis(firstRegister), millis(secondRegister));
+        } catch (Exception ex) {
+            throw new IllegalStateException(mode.name() + " failed, application output is in " + log, ex);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private long awaitPort(Process process, int port, long deadline) throws Exception {
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("The application exited with status " + process.exitValue());
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("localhost", port), 100);
+                return System.nanoTime();
+            } catch (IOException notYet) {
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+        }
+        throw new IllegalStateException("Port " + port + " did not open in time");
+    }
+
+    /**
+     * The port can open a little before the STOMP endpoint is ready, so a failed handshake is retried.
+     */
+    private StompSession awaitConnected(int port, long deadline) throws Exception {
+        Exception last = null;
+        while (System.nanoTime() < deadline) {
+            try {
+                return stompClient.connectAsync("ws://localhost:" + port + "/ws", new StompSessionHandlerAdapter() {
+                }).get(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())), TimeUnit.MILLISECONDS);
+            } catch (Exception ex) {
+                last = ex;
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+        }
+        throw new IllegalStateException("No CONNECTED in time", last);
+    }
+
+    /**
+     * Registers as {@code me} and waits for the user settings frame that follows the snapshot.
+     */
+    private long register(StompSession session, String me) throws Exception {
+        CountDownLatch settings = new CountDownLatch(1);
+        session.subscribe("/topic/settings/user/" + me, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return byte[].class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                settings.countDown();
+            }
+        });
+        long started = System.nanoTime();
+        session.send("/app/session/register", Map.of("me", me, "sendMe", AppConstants.FOOD_EMOJIS.get(0)));
+        if (!settings.await(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Registration as " + me + " was not answered");
+        }
+        return System.nanoTime() - started;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    private static long median(List<Run> runs, ToLongFunction<Run> metric) {
+        long[] values = runs.stream().mapToLong(metric).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private record Mode(String name, Path directory, List<String> jvmArgs) {
+    }
+
+    private record Run(long listening, long connected, long firstRegister, long secondRegister) {
+    }
+
+    private record Summary(String mode, long listening, long connected, long bestConnected, long firstRegister, long secondRegister) {
+
+        static final String HEADER = String.format("%-12s %12s %12s %12s %16s %16s",
+                "mode", "listening", "CONNECTED", "best", "first register", "second register");
+
+        String format() {
+            return String.format("%-12s %9d ms %9d ms %9d ms %13d ms %13d ms",
+                    mode, listening, connected, bestConnected, firstRegister, secondRegister);
+        }
+    }
+}
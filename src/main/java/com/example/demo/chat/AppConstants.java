@@ -1,6 +1,7 @@
 package com.example.demo.chat;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public final class AppConstants {
 
@@ -22,4 +23,14 @@ public final class AppConstants {
     public static final String DEFAULT_SEND_US = FOOD_EMOJIS.get(2);
 
     public static final String EVERYONE = "EVERYONE";
+    public static final String SYSTEM_SENDER = "SYSTEM";
+
+    /**
+     * Strings the compact wire encoding sends as indexes. Entries may only be appended.
+     */
+    public static final List<String> WIRE_SYMBOLS = Stream.of(
+            ANIMAL_EMOJIS.stream(),
+            FOOD_EMOJIS.stream(),
+            Stream.of(EVERYONE, SYSTEM_SENDER)
+    ).flatMap(symbols -> symbols).toList();
 }
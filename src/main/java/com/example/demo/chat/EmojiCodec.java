@@ -0,0 +1,78 @@
+package com.example.demo.chat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the fixed emoji tables in {@link AppConstants} to small ordinals and back. Lookups are a single hash
+ * probe and never allocate; the strings handed back are the table's own instances, so state built from
+ * them holds no copies of wire strings.
+ */
+public final class EmojiCodec {
+
+    public static final int ANIMALS = AppConstants.ANIMAL_EMOJIS.size();
+    public static final int FOODS = AppConstants.FOOD_EMOJIS.size();
+
+    private static final String[] ANIMAL_TABLE = AppConstants.ANIMAL_EMOJIS.toArray(String[]::new);
+    private static final String[] FOOD_TABLE = AppConstants.FOOD_EMOJIS.toArray(String[]::new);
+    private static final Map<String, Integer> ANIMAL_ORDINALS = ordinals(AppConstants.ANIMAL_EMOJIS);
+    private static final Map<String, Integer> FOOD_ORDINALS = ordinals(AppConstants.FOOD_EMOJIS);
+    private static final Map<String, Integer> SYMBOL_INDEXES = ordinals(AppConstants.WIRE_SYMBOLS);
+
+    private EmojiCodec() {
+    }
+
+    /**
+     * Ordinal of an animal emoji, or {@code -1} when it is not one.
+     */
+    public static int animal(String emoji) {
+        return lookup(ANIMAL_ORDINALS, emoji);
+    }
+
+    /**
+     * Ordinal of a food emoji, or {@code -1} when it is not one.
+     */
+    public static int food(String emoji) {
+        return lookup(FOOD_ORDINALS, emoji);
+    }
+
+    /**
+     * Index in {@link AppConstants#WIRE_SYMBOLS}, or {@code -1}.
+     */
+    public static int symbol(String value) {
+        return lookup(SYMBOL_INDEXES, value);
+    }
+
+    public static String animalAt(int ordinal) {
+        return ANIMAL_TABLE[ordinal];
+    }
+
+    public static String foodAt(int ordinal) {
+        return FOOD_TABLE[ordinal];
+    }
+
+    public static boolean isAnimal(String emoji) {
+        return animal(emoji) >= 0;
+    }
+
+    public static boolean isFood(String emoji) {
+        return food(emoji) >= 0;
+    }
+
+    private static int lookup(Map<String, Integer> ordinals, String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer ordinal = ordinals.get(value);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    private static Map<String, Integer> ordinals(List<String> table) {
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < table.size(); i++) {
+            ordinals.put(table.get(i), i);
+        }
+        return Map.copyOf(ordinals);
+    }
+}
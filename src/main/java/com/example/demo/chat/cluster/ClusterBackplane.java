@@ -0,0 +1,25 @@
+package com.example.demo.chat.cluster;
+
+import java.util.Set;
+
+/**
+ * Transport between chat nodes. Implementations deliver events to other nodes only (never back to the
+ * sender) and report membership changes, including the local node joining.
+ */
+public interface ClusterBackplane {
+
+    String nodeId();
+
+    /**
+     * Current members, including this node once started.
+     */
+    Set<String> members();
+
+    void start(ClusterListener listener);
+
+    void stop();
+
+    void broadcast(ClusterEvent event);
+
+    void send(String nodeId, ClusterEvent event);
+}
@@ -0,0 +1,360 @@
+package com.example.demo.chat.cluster;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.cluster.ClusterEvent.InterestChanged;
+import com.example.demo.chat.cluster.ClusterEvent.MessageRecorded;
+import com.example.demo.chat.cluster.ClusterEvent.PresenceChanged;
+import com.example.demo.chat.cluster.ClusterEvent.SendMeChanged;
+import com.example.demo.chat.cluster.ClusterEvent.SendUsChanged;
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.MessageAudience;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps this node's view of the cluster: which users are online on other nodes, which destinations other
+ * nodes have subscribers for, and the replicated SEND US / SEND ME values. Scheduled emissions are split
+ * so each runs on exactly one node: the broadcast on the leader (lowest node id) and per-user emissions
+ * on the node that wins rendezvous hashing for that user. Device emissions are already node-local.
+ */
+@Component
+public class ClusterCoordinator implements SmartLifecycle {
+
+    private static final ClusterEventHandler NO_HANDLER = new ClusterEventHandler() {
+        @Override
+        public void onPresenceChanged(Set<String> remoteUsers) {
+        }
+
+        @Override
+        public void onSendUsChanged(String value) {
+        }
+
+        @Override
+        public void onSendMeChanged(String userEmoji, String value) {
+        }
+
+        @Override
+        public void onMessage(EncodedChatMessage message, List<String> deliverTo) {
+        }
+    };
+
+    private final ClusterBackplane backplane;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, String> localPresence = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> localSubscriptions = new ConcurrentHashMap<>();
+    private final Map<String, Integer> localInterest = new ConcurrentHashMap<>();
+    private final ReentrantLock interestLock = new ReentrantLock();
+    private final Map<String, Map<String, String>> remotePresence = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> remoteInterest = new ConcurrentHashMap<>();
+    private final Map<String, String> sendMeValues = new ConcurrentHashMap<>();
+    private volatile String sendUs;
+    private volatile Set<String> members = Set.of();
+    private volatile ClusterEventHandler handler = NO_HANDLER;
+    private volatile boolean running;
+
+    public ClusterCoordinator(ClusterBackplane backplane) {
+        this.backplane = backplane;
+    }
+
+    /**
+     * A started coordinator on its own single-node loopback hub.
+     */
+    public static ClusterCoordinator standalone() {
+        ClusterCoordinator coordinator = new ClusterCoordinator(new LoopbackBackplane.Hub().node("local"));
+        coordinator.start();
+        return coordinator;
+    }
+
+    public void attach(ClusterEventHandler handler) {
+        this.handler = handler;
+    }
+
+    public String nodeId() {
+        return backplane.nodeId();
+    }
+
+    public Set<String> members() {
+        return members;
+    }
+
+    public boolean isLeader() {
+        Set<String> current = members;
+        String self = backplane.nodeId();
+        for (String member : current) {
+            if (member.compareTo(self) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether this node emits scheduled traffic for {@code key}, by rendezvous hashing over the members.
+     */
+    public boolean owns(String key) {
+        Set<String> current = members;
+        String self = backplane.nodeId();
+        String owner = self;
+        int best = score(self, key);
+        for (String member : current) {
+            int score = score(member, key);
+            if (score > best || (score == best && member.compareTo(owner) < 0)) {
+                best = score;
+                owner = member;
+            }
+        }
+        return owner.equals(self);
+    }
+
+    public void sessionRegistered(String sessionId, String userEmoji) {
+        if (!userEmoji.equals(localPresence.put(sessionId, userEmoji))) {
+            backplane.broadcast(new PresenceChanged(sessionId, userEmoji));
+        }
+    }
+
+    public void sessionRemoved(String sessionId) {
+        if (localPresence.remove(sessionId) != null) {
+            backplane.broadcast(new PresenceChanged(sessionId, null));
+        }
+        Map<String, String> subscriptions = localSubscriptions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::releaseInterest);
+        }
+    }
+
+    public void subscribed(String sessionId, String subscriptionId, String destination) {
+        String previous = localSubscriptions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            releaseInterest(previous);
+        }
+        acquireInterest(destination);
+    }
+
+    public void unsubscribed(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = localSubscriptions.get(sessionId);
+        String destination = subscriptions == null ? null : subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            releaseInterest(destination);
+        }
+    }
+
+    public void sendUsChanged(String value) {
+        sendUs = value;
+        backplane.broadcast(new SendUsChanged(value));
+    }
+
+    public void sendMeChanged(String userEmoji, String value) {
+        sendMeValues.put(userEmoji, value);
+        backplane.broadcast(new SendMeChanged(userEmoji, value));
+    }
+
+    public Optional<String> sendMe(String userEmoji) {
+        return Optional.ofNullable(sendMeValues.get(userEmoji));
+    }
+
+    public Set<String> remoteUsers() {
+        Set<String> users = new HashSet<>();
+        for (Map<String, String> sessions : remotePresence.values()) {
+            users.addAll(sessions.values());
+        }
+        return users;
+    }
+
+    public boolean hasRemoteSessions() {
+        for (Map<String, String> sessions : remotePresence.values()) {
+            if (!sessions.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges local online users with those on other nodes, in catalog order.
+     */
+    public List<String> onlineUsers(Collection<String> localUsers) {
+        if (remotePresence.isEmpty()) {
+            return List.copyOf(localUsers);
+        }
+        Set<String> online = remoteUsers();
+        online.addAll(localUsers);
+        List<String> result = new ArrayList<>(online.size());
+        for (String emoji : AppConstants.ANIMAL_EMOJIS) {
+            if (online.contains(emoji)) {
+                result.add(emoji);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sends a recorded message to every other node for its history, listing only the destinations that
+     * node has subscribers for. Device messages stay local because the target session lives here.
+     */
+    public void replicate(EncodedChatMessage message, String... destinations) {
+        if (message.message().audience() == MessageAudience.DEVICE) {
+            return;
+        }
+        for (String member : members) {
+            if (member.equals(backplane.nodeId())) {
+                continue;
+            }
+            backplane.send(member, new MessageRecorded(message, interestedDestinations(member, destinations)));
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        backplane.start(new Listener());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        backplane.stop();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private List<String> interestedDestinations(String member, String[] destinations) {
+        Set<String> interest = remoteInterest.get(member);
+        if (interest == null || interest.isEmpty()) {
+            return List.of();
+        }
+        List<String> result = new ArrayList<>(destinations.length);
+        for (String destination : destinations) {
+            if (matches(interest, destination)) {
+                result.add(destination);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(Set<String> interest, String destination) {
+        if (interest.contains(destination)) {
+            return true;
+        }
+        for (String candidate : interest) {
+            if (pathMatcher.isPattern(candidate) && pathMatcher.match(candidate, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void acquireInterest(String destination) {
+        interestLock.lock();
+        try {
+            if (localInterest.merge(destination, 1, Integer::sum) == 1) {
+                backplane.broadcast(new InterestChanged(destination, true));
+            }
+        } finally {
+            interestLock.unlock();
+        }
+    }
+
+    private void releaseInterest(String destination) {
+        interestLock.lock();
+        try {
+            if (localInterest.computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null) == null) {
+                backplane.broadcast(new InterestChanged(destination, false));
+            }
+        } finally {
+            interestLock.unlock();
+        }
+    }
+
+    private void sendStateTo(String member) {
+        localPresence.forEach((sessionId, userEmoji) -> backplane.send(member, new PresenceChanged(sessionId, userEmoji)));
+        interestLock.lock();
+        try {
+            localInterest.keySet().forEach(destination -> backplane.send(member, new InterestChanged(destination, true)));
+        } finally {
+            interestLock.unlock();
+        }
+        sendMeValues.forEach((userEmoji, value) -> backplane.send(member, new SendMeChanged(userEmoji, value)));
+        String currentSendUs = sendUs;
+        if (currentSendUs != null) {
+            backplane.send(member, new SendUsChanged(currentSendUs));
+        }
+    }
+
+    private static int score(String member, String key) {
+        int h = member.hashCode() * 31 + key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private final class Listener implements ClusterListener {
+
+        @Override
+        public void onEvent(String fromNode, ClusterEvent event) {
+            if (event instanceof PresenceChanged presence) {
+                Map<String, String> sessions = remotePresence.computeIfAbsent(fromNode, node -> new ConcurrentHashMap<>());
+                if (presence.userEmoji() == null) {
+                    sessions.remove(presence.sessionId());
+                } else {
+                    sessions.put(presence.sessionId(), presence.userEmoji());
+                }
+                handler.onPresenceChanged(remoteUsers());
+            } else if (event instanceof InterestChanged interest) {
+                Set<String> destinations = remoteInterest.computeIfAbsent(fromNode, node -> ConcurrentHashMap.newKeySet());
+                if (interest.subscribed()) {
+                    destinations.add(interest.destination());
+                } else {
+                    destinations.remove(interest.destination());
+                }
+            } else if (event instanceof SendUsChanged update) {
+                sendUs = update.value();
+                handler.onSendUsChanged(update.value());
+            } else if (event instanceof SendMeChanged update) {
+                sendMeValues.put(update.userEmoji(), update.value());
+                handler.onSendMeChanged(update.userEmoji(), update.value());
+            } else if (event instanceof MessageRecorded recorded) {
+                handler.onMessage(recorded.message(), recorded.deliverTo());
+            }
+        }
+
+        @Override
+        public void onMembershipChanged(Set<String> current) {
+            Set<String> previous = members;
+            members = Set.copyOf(current);
+            String self = backplane.nodeId();
+            for (String member : current) {
+                if (!member.equals(self) && !previous.contains(member)) {
+                    sendStateTo(member);
+                }
+            }
+            boolean presenceLost = false;
+            for (String member : previous) {
+                if (!current.contains(member)) {
+                    remoteInterest.remove(member);
+                    presenceLost |= remotePresence.remove(member) != null;
+                }
+            }
+            if (presenceLost) {
+                handler.onPresenceChanged(remoteUsers());
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.chat.cluster;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+
+import java.util.List;
+
+/**
+ * State replicated between nodes. Presence, interest and settings go to every node; chat messages go to
+ * every node for history, carrying only the destinations that node has subscribers for.
+ */
+public sealed interface ClusterEvent {
+
+    /**
+     * A session on the sending node registered as {@code userEmoji}, or left when it is {@code null}.
+     */
+    record PresenceChanged(String sessionId, String userEmoji) implements ClusterEvent {
+    }
+
+    /**
+     * The sending node gained its first or lost its last local subscriber for {@code destination}.
+     */
+    record InterestChanged(String destination, boolean subscribed) implements ClusterEvent {
+    }
+
+    record SendUsChanged(String value) implements ClusterEvent {
+    }
+
+    record SendMeChanged(String userEmoji, String value) implements ClusterEvent {
+    }
+
+    record MessageRecorded(EncodedChatMessage message, List<String> deliverTo) implements ClusterEvent {
+    }
+}
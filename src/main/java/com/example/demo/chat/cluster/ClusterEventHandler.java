@@ -0,0 +1,20 @@
+package com.example.demo.chat.cluster;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies state received from other nodes to the local node.
+ */
+public interface ClusterEventHandler {
+
+    void onPresenceChanged(Set<String> remoteUsers);
+
+    void onSendUsChanged(String value);
+
+    void onSendMeChanged(String userEmoji, String value);
+
+    void onMessage(EncodedChatMessage message, List<String> deliverTo);
+}
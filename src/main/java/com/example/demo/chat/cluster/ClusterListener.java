@@ -0,0 +1,10 @@
+package com.example.demo.chat.cluster;
+
+import java.util.Set;
+
+public interface ClusterListener {
+
+    void onEvent(String fromNode, ClusterEvent event);
+
+    void onMembershipChanged(Set<String> members);
+}
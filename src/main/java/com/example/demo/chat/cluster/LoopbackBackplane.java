@@ -0,0 +1,93 @@
+package com.example.demo.chat.cluster;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process backplane. Nodes joined to the same {@link Hub} see each other and receive events
+ * synchronously on the sender's thread. A hub with a single node is the standalone deployment.
+ */
+public final class LoopbackBackplane implements ClusterBackplane {
+
+    private final Hub hub;
+    private final String nodeId;
+    private volatile ClusterListener listener;
+
+    private LoopbackBackplane(Hub hub, String nodeId) {
+        this.hub = hub;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public Set<String> members() {
+        return hub.members();
+    }
+
+    @Override
+    public void start(ClusterListener listener) {
+        this.listener = listener;
+        hub.join(this);
+    }
+
+    @Override
+    public void stop() {
+        hub.leave(this);
+    }
+
+    @Override
+    public void broadcast(ClusterEvent event) {
+        for (LoopbackBackplane node : hub.nodes.values()) {
+            if (node != this) {
+                node.listener.onEvent(nodeId, event);
+            }
+        }
+    }
+
+    @Override
+    public void send(String targetNodeId, ClusterEvent event) {
+        LoopbackBackplane node = hub.nodes.get(targetNodeId);
+        if (node != null && node != this) {
+            node.listener.onEvent(nodeId, event);
+        }
+    }
+
+    public static final class Hub {
+
+        private final Map<String, LoopbackBackplane> nodes = new ConcurrentHashMap<>();
+
+        public LoopbackBackplane node(String nodeId) {
+            return new LoopbackBackplane(this, nodeId);
+        }
+
+        private void join(LoopbackBackplane node) {
+            if (nodes.putIfAbsent(node.nodeId, node) != null) {
+                throw new IllegalStateException("Node " + node.nodeId + " already joined");
+            }
+            notifyMembers();
+        }
+
+        private void leave(LoopbackBackplane node) {
+            if (nodes.remove(node.nodeId, node)) {
+                notifyMembers();
+            }
+        }
+
+        private Set<String> members() {
+            return new TreeSet<>(nodes.keySet());
+        }
+
+        private void notifyMembers() {
+            Set<String> members = members();
+            for (LoopbackBackplane node : nodes.values()) {
+                node.listener.onMembershipChanged(members);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.chat.controller;
+
+import com.example.demo.chat.service.ChatCatalog;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+
+/**
+ * Serves the {@link ChatCatalog}. Snapshots only name the catalog version; {@code /catalog/{version}} is
+ * immutable, while {@code /catalog} always revalidates against the current ETag.
+ */
+@RestController
+public class CatalogController {
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    private final ChatCatalog catalog;
+
+    public CatalogController(ChatCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @GetMapping("/catalog")
+    public ResponseEntity<byte[]> current(@RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return respond(ifNoneMatch, CacheControl.noCache());
+    }
+
+    @GetMapping("/catalog/{version}")
+    public ResponseEntity<byte[]> versioned(@PathVariable String version,
+                                            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (!catalog.version().equals(version)) {
+            return ResponseEntity.notFound().build();
+        }
+        return respond(ifNoneMatch, IMMUTABLE);
+    }
+
+    private ResponseEntity<byte[]> respond(String ifNoneMatch, CacheControl cacheControl) {
+        String etag = "\"" + catalog.version() + "\"";
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).eTag(etag).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(catalog.json());
+    }
+}
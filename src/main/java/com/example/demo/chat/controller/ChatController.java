@@ -4,6 +4,8 @@ import com.example.demo.chat.dto.SendMessageRequest;
 import com.example.demo.chat.dto.SessionRegistrationRequest;
 import com.example.demo.chat.dto.ValueUpdateRequest;
 import com.example.demo.chat.service.ChatService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.stereotype.Controller;
@@ -12,33 +14,51 @@ import org.springframework.stereotype.Controller;
 public class ChatController {
 
     private final ChatService chatService;
+    private final Timer registerTimer;
+    private final Timer sendMessageTimer;
+    private final Timer sendUsTimer;
+    private final Timer sendMeTimer;
+    private final Timer sendHereTimer;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, MeterRegistry meterRegistry) {
         this.chatService = chatService;
+        this.registerTimer = handlerTimer("/session/register", meterRegistry);
+        this.sendMessageTimer = handlerTimer("/message/send", meterRegistry);
+        this.sendUsTimer = handlerTimer("/settings/send-us", meterRegistry);
+        this.sendMeTimer = handlerTimer("/settings/send-me", meterRegistry);
+        this.sendHereTimer = handlerTimer("/settings/send-here", meterRegistry);
     }
 
     @MessageMapping("/session/register")
     public void register(@Header("simpSessionId") String sessionId, SessionRegistrationRequest request) {
-        chatService.handleRegistration(sessionId, request);
+        registerTimer.record(() -> chatService.handleRegistration(sessionId, request));
     }
 
     @MessageMapping("/message/send")
     public void sendMessage(@Header("simpSessionId") String sessionId, SendMessageRequest request) {
-        chatService.handleSendMessage(sessionId, request);
+        sendMessageTimer.record(() -> chatService.handleSendMessage(sessionId, request));
     }
 
     @MessageMapping("/settings/send-us")
     public void updateSendUs(@Header("simpSessionId") String sessionId, ValueUpdateRequest request) {
-        chatService.handleSendUsUpdate(sessionId, request);
+        sendUsTimer.record(() -> chatService.handleSendUsUpdate(sessionId, request));
     }
 
     @MessageMapping("/settings/send-me")
     public void updateSendMe(@Header("simpSessionId") String sessionId, ValueUpdateRequest request) {
-        chatService.handleSendMeUpdate(sessionId, request);
+        sendMeTimer.record(() -> chatService.handleSendMeUpdate(sessionId, request));
     }
 
     @MessageMapping("/settings/send-here")
     public void updateSendHere(@Header("simpSessionId") String sessionId, ValueUpdateRequest request) {
-        chatService.handleSendHereUpdate(sessionId, request);
+        sendHereTimer.record(() -> chatService.handleSendHereUpdate(sessionId, request));
+    }
+
+    private static Timer handlerTimer(String mapping, MeterRegistry meterRegistry) {
+        return Timer.builder("chat.handler")
+                .description("Time spent in @MessageMapping handlers")
+                .tag("mapping", mapping)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,11 @@
+package com.example.demo.chat.dto;
+
+import java.util.List;
+
+public record CatalogPayload(
+        String version,
+        List<String> animalOptions,
+        List<String> foodOptions,
+        List<String> symbols
+) {
+}
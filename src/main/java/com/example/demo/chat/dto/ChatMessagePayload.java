@@ -7,6 +7,7 @@ public record ChatMessagePayload(
         String target,
         String audience,
         String source,
-        String content
+        String content,
+        long sequence
 ) {
 }
@@ -0,0 +1,62 @@
+package com.example.demo.chat.dto;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.EmojiCodec;
+import com.example.demo.chat.model.ChatMessage;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the compact form of a {@link ChatMessagePayload}: a JSON array
+ * {@code [sequence, epochMillis, sender, target, audience, source, content]}. Enums are sent as ordinals
+ * and any string found in {@link AppConstants#WIRE_SYMBOLS} as its index; everything else stays a JSON string, so the
+ * result always parses as plain JSON. A message without a sequence sends its id string in its place.
+ */
+final class CompactChatMessageWriter {
+
+    private CompactChatMessageWriter() {
+    }
+
+    static byte[] write(ChatMessage message, long sequence) {
+        StringBuilder out = new StringBuilder(48).append('[');
+        if (sequence >= 0) {
+            out.append(sequence);
+        } else {
+            // ids use all 64 bits, past what a JavaScript number holds exactly
+            out.append('"').append(message.id()).append('"');
+        }
+        out.append(',').append(message.timestamp().toEpochMilli()).append(',');
+        symbol(out, message.sender());
+        out.append(',');
+        symbol(out, switch (message.audience()) {
+            case EVERYONE -> AppConstants.EVERYONE;
+            case USER -> message.targetUser();
+            case DEVICE -> message.targetSession();
+        });
+        out.append(',').append(message.audience().ordinal())
+                .append(',').append(message.source().ordinal())
+                .append(',');
+        symbol(out, message.content());
+        return out.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void symbol(StringBuilder out, String value) {
+        int index = EmojiCodec.symbol(value);
+        if (index >= 0) {
+            out.append(index);
+        } else {
+            string(out, value);
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        JsonStringEncoder.getInstance().quoteAsString(value, out);
+        out.append('"');
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.chat.dto;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+
+/**
+ * A {@link ChatMessage} together with its JSON {@link ChatMessagePayload} encoding, produced once
+ * and shared by every publish of that message and by every snapshot that embeds it. The compact
+ * encoding is produced on first use, so it costs nothing while no connection has asked for it.
+ */
+public final class EncodedChatMessage implements JsonSerializable {
+
+    /**
+     * Frame header carrying the message itself, so the outbound channel can swap in the compact payload.
+     */
+    public static final String HEADER = "chatMessage";
+
+    private final ChatMessage message;
+    private final long sequence;
+    private final SerializedString json;
+    private final Message<byte[]> frame;
+    private volatile byte[] compact;
+
+    public EncodedChatMessage(ChatMessage message, String json) {
+        this(message, -1, json);
+    }
+
+    public EncodedChatMessage(ChatMessage message, long sequence, String json) {
+        this.message = message;
+        this.sequence = sequence;
+        this.json = new SerializedString(json);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(HEADER, this);
+        this.frame = MessageBuilder.createMessage(this.json.asUnquotedUTF8(), accessor.getMessageHeaders());
+    }
+
+    public ChatMessage message() {
+        return message;
+    }
+
+    /**
+     * History sequence embedded in the payload, or {@code -1} when encoded without one.
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Ready-to-send message with immutable headers; the messaging template copies the headers to
+     * add a destination but reuses the payload bytes.
+     */
+    public Message<byte[]> frame() {
+        return frame;
+    }
+
+    /**
+     * The compact array form of the payload; see {@link CompactChatMessageWriter}.
+     */
+    public byte[] compactPayload() {
+        byte[] bytes = compact;
+        if (bytes == null) {
+            // racing callers produce identical bytes, so the duplicate work is harmless
+            bytes = CompactChatMessageWriter.write(message, sequence);
+            compact = bytes;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeRawValue(json);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSerializer) throws IOException {
+        serialize(generator, serializers);
+    }
+}
@@ -2,5 +2,8 @@ package com.example.demo.chat.dto;
 
 import java.util.List;
 
-public record OnlineUsersPayload(List<String> users) {
+/**
+ * Full presence state at {@code version}; later {@link PresenceDeltaPayload}s continue from it.
+ */
+public record OnlineUsersPayload(List<String> users, long version) {
 }
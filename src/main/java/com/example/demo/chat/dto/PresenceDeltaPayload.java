@@ -0,0 +1,9 @@
+package com.example.demo.chat.dto;
+
+import java.util.List;
+
+/**
+ * Presence changes between {@code version - 1} and {@code version}.
+ */
+public record PresenceDeltaPayload(long version, List<String> joined, List<String> left) {
+}
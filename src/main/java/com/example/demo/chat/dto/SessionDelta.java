@@ -0,0 +1,20 @@
+package com.example.demo.chat.dto;
+
+import java.util.List;
+
+/**
+ * Reply to a resumed registration: only what the client missed since the sequence and state version it
+ * reported. {@code sendMe} and {@code sendUs} are {@code null} when unchanged.
+ */
+public record SessionDelta(
+        String sessionId,
+        String me,
+        String sendMe,
+        String sendUs,
+        long presenceVersion,
+        List<String> onlineUsers,
+        List<EncodedChatMessage> missedMessages,
+        String stateVersion,
+        long lastSequence
+) {
+}
@@ -1,8 +1,22 @@
 package com.example.demo.chat.dto;
 
+/**
+ * {@code lastSequence} and {@code stateVersion} are echoed back from an earlier snapshot or delta when a
+ * client reconnects; both are {@code null} on a first registration.
+ */
 public record SessionRegistrationRequest(
         String me,
         String sendMe,
-        String sendHere
+        String sendHere,
+        Long lastSequence,
+        String stateVersion
 ) {
+
+    public SessionRegistrationRequest(String me, String sendMe, String sendHere) {
+        this(me, sendMe, sendHere, null, null);
+    }
+
+    public boolean isResume() {
+        return lastSequence != null && stateVersion != null;
+    }
 }
@@ -8,9 +8,11 @@ public record SessionSnapshot(
         String sendMe,
         String sendHere,
         String sendUs,
+        long presenceVersion,
         List<String> onlineUsers,
-        List<ChatMessagePayload> recentMessages,
-        List<String> animalOptions,
-        List<String> foodOptions
+        List<EncodedChatMessage> recentMessages,
+        String catalogVersion,
+        String stateVersion,
+        long lastSequence
 ) {
 }
@@ -1,18 +1,39 @@
 package com.example.demo.chat.listener;
 
+import com.example.demo.chat.cluster.ClusterCoordinator;
 import com.example.demo.chat.service.ChatService;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
 @Component
 public class StompEventListener {
 
     private final ChatService chatService;
+    private final ClusterCoordinator cluster;
 
-    public StompEventListener(ChatService chatService) {
+    public StompEventListener(ChatService chatService, ClusterCoordinator cluster) {
         this.chatService = chatService;
+        this.cluster = cluster;
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null && accessor.getDestination() != null) {
+            cluster.subscribed(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+        }
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            cluster.unsubscribed(accessor.getSessionId(), accessor.getSubscriptionId());
+        }
     }
 
     @EventListener
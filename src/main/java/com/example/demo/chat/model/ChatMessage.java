@@ -1,10 +1,14 @@
 package com.example.demo.chat.model;
 
 import java.time.Instant;
-import java.util.UUID;
 
+/**
+ * A chat message. The factories stamp it with a time-ordered {@link MessageIds id} and a {@link CoarseClock}
+ * timestamp, so neither {@code SecureRandom} nor a fresh {@code Instant} is involved per message. Each node
+ * passes its own generator, whose node bits keep its ids apart from the other nodes'.
+ */
 public record ChatMessage(
-        String id,
+        long id,
         Instant timestamp,
         String sender,
         MessageAudience audience,
@@ -14,10 +18,11 @@ public record ChatMessage(
         String targetSession
 ) {
 
-    public static ChatMessage broadcast(String sender, String content, MessageSource source) {
+    public static ChatMessage broadcast(MessageIds ids, String sender, String content, MessageSource source) {
+        Instant now = CoarseClock.SYSTEM.instant();
         return new ChatMessage(
-                UUID.randomUUID().toString(),
-                Instant.now(),
+                ids.next(now.toEpochMilli()),
+                now,
                 sender,
                 MessageAudience.EVERYONE,
                 source,
@@ -27,10 +32,11 @@ public record ChatMessage(
         );
     }
 
-    public static ChatMessage userTargeted(String sender, String targetUser, String content, MessageSource source) {
+    public static ChatMessage userTargeted(MessageIds ids, String sender, String targetUser, String content, MessageSource source) {
+        Instant now = CoarseClock.SYSTEM.instant();
         return new ChatMessage(
-                UUID.randomUUID().toString(),
-                Instant.now(),
+                ids.next(now.toEpochMilli()),
+                now,
                 sender,
                 MessageAudience.USER,
                 source,
@@ -40,10 +46,11 @@ public record ChatMessage(
         );
     }
 
-    public static ChatMessage deviceTargeted(String sender, String targetSession, String content, MessageSource source) {
+    public static ChatMessage deviceTargeted(MessageIds ids, String sender, String targetSession, String content, MessageSource source) {
+        Instant now = CoarseClock.SYSTEM.instant();
         return new ChatMessage(
-                UUID.randomUUID().toString(),
-                Instant.now(),
+                ids.next(now.toEpochMilli()),
+                now,
                 sender,
                 MessageAudience.DEVICE,
                 source,
@@ -0,0 +1,31 @@
+package com.example.demo.chat.model;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Millisecond clock for message timestamps. Callers within the same millisecond share one {@link Instant},
+ * so creating messages at a high rate allocates at most one per millisecond instead of one per message.
+ */
+public final class CoarseClock {
+
+    public static final CoarseClock SYSTEM = new CoarseClock(Clock.systemUTC());
+
+    private final Clock clock;
+    private volatile Instant current = Instant.EPOCH;
+
+    public CoarseClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public Instant instant() {
+        long millis = clock.millis();
+        Instant instant = current;
+        if (instant.toEpochMilli() != millis) {
+            // racing threads may each publish an equal Instant; any of them will do
+            instant = Instant.ofEpochMilli(millis);
+            current = instant;
+        }
+        return instant;
+    }
+}
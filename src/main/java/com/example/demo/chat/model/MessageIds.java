@@ -0,0 +1,45 @@
+package com.example.demo.chat.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered 64-bit message ids: 42 bits of milliseconds since 2025-01-01, a 10-bit node and a 12-bit
+ * counter. Ids from one generator strictly increase; when the counter runs out within a millisecond, or the
+ * clock steps back, they borrow from the following millisecond instead of repeating.
+ */
+public final class MessageIds {
+
+    static final long EPOCH_MILLIS = 1_735_689_600_000L;
+    static final int NODE_BITS = 10;
+    static final int COUNTER_BITS = 12;
+
+    private final long node;
+    private final AtomicLong last = new AtomicLong();
+
+    public MessageIds(int node) {
+        if (node < 0 || node >= 1 << NODE_BITS) {
+            throw new IllegalArgumentException("Node must be in [0, " + (1 << NODE_BITS) + ")");
+        }
+        this.node = node;
+    }
+
+    public long next(long epochMillis) {
+        // last holds (millis since EPOCH_MILLIS << COUNTER_BITS | counter), so +1 steps the counter and carries
+        // into the millisecond on overflow
+        long floor = (epochMillis - EPOCH_MILLIS) << COUNTER_BITS;
+        long state = last.accumulateAndGet(floor, (previous, now) -> Math.max(previous + 1, now));
+        return (state >>> COUNTER_BITS) << (NODE_BITS + COUNTER_BITS) | node << COUNTER_BITS | (state & ((1 << COUNTER_BITS) - 1));
+    }
+
+    /**
+     * Node bits for a named node. Distinct names can still share a value, so clustered deployments that
+     * cannot rule that out set the node number directly.
+     */
+    public static int nodeOf(String name) {
+        return Math.floorMod(name.hashCode(), 1 << NODE_BITS);
+    }
+
+    public static long epochMillisOf(long id) {
+        return (id >>> (NODE_BITS + COUNTER_BITS)) + EPOCH_MILLIS;
+    }
+}
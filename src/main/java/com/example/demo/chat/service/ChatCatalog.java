@@ -0,0 +1,48 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.CatalogPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The option lists and wire symbol table, serialized once. The version is a hash of the content, so it
+ * only changes when the catalog does and clients can cache a versioned copy forever.
+ */
+@Component
+public class ChatCatalog {
+
+    private final String version;
+    private final byte[] json;
+
+    public ChatCatalog(ObjectMapper objectMapper) {
+        try {
+            CatalogPayload unversioned = payload("");
+            this.version = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsBytes(unversioned)), 0, 8);
+            this.json = objectMapper.writeValueAsBytes(payload(version));
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Failed to serialize the catalog", ex);
+        }
+    }
+
+    public String version() {
+        return version;
+    }
+
+    /**
+     * Serialized {@link CatalogPayload}; callers must not modify the array.
+     */
+    public byte[] json() {
+        return json;
+    }
+
+    private static CatalogPayload payload(String version) {
+        return new CatalogPayload(version, AppConstants.ANIMAL_EMOJIS, AppConstants.FOOD_EMOJIS, AppConstants.WIRE_SYMBOLS);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.ChatMessagePayload;
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+@Component
+public class ChatMessageEncoder {
+
+    private final ObjectMapper objectMapper;
+    // Messages created within the same millisecond share their timestamp, so one rendering serves them all.
+    private volatile RenderedTimestamp lastTimestamp = new RenderedTimestamp(Instant.EPOCH, Instant.EPOCH.toString());
+
+    public ChatMessageEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public EncodedChatMessage encode(ChatMessage message) {
+        return encode(message, -1);
+    }
+
+    public EncodedChatMessage encode(ChatMessage message, long sequence) {
+        try {
+            return new EncodedChatMessage(message, sequence, objectMapper.writeValueAsString(toPayload(message, sequence)));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to encode message " + message.id(), ex);
+        }
+    }
+
+    ChatMessagePayload toPayload(ChatMessage message, long sequence) {
+        String target = switch (message.audience()) {
+            case EVERYONE -> AppConstants.EVERYONE;
+            case USER -> message.targetUser();
+            case DEVICE -> message.targetSession();
+        };
+        return new ChatMessagePayload(
+                Long.toString(message.id()),
+                render(message.timestamp()),
+                message.sender(),
+                target,
+                message.audience().name(),
+                message.source().name(),
+                message.content(),
+                sequence
+        );
+    }
+
+    private String render(Instant timestamp) {
+        RenderedTimestamp last = lastTimestamp;
+        if (last.instant() == timestamp || last.instant().equals(timestamp)) {
+            return last.text();
+        }
+        RenderedTimestamp rendered = new RenderedTimestamp(timestamp, timestamp.toString());
+        lastTimestamp = rendered;
+        return rendered.text();
+    }
+
+    private record RenderedTimestamp(Instant instant, String text) {
+    }
+}
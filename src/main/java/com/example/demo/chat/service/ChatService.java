@@ -1,32 +1,43 @@
 package com.example.demo.chat.service;
 
 import com.example.demo.chat.AppConstants;
-import com.example.demo.chat.dto.ChatMessagePayload;
-import com.example.demo.chat.dto.ErrorPayload;
+import com.example.demo.chat.EmojiCodec;
+import com.example.demo.chat.cluster.ClusterCoordinator;
+import com.example.demo.chat.cluster.ClusterEventHandler;
+import com.example.demo.chat.dto.EncodedChatMessage;
 import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.example.demo.chat.dto.ErrorPayload;
 import com.example.demo.chat.dto.SendHerePayload;
 import com.example.demo.chat.dto.SendMePayload;
 import com.example.demo.chat.dto.SendMessageRequest;
 import com.example.demo.chat.dto.SendUsPayload;
+import com.example.demo.chat.dto.SessionDelta;
 import com.example.demo.chat.dto.SessionRegistrationRequest;
 import com.example.demo.chat.dto.SessionSnapshot;
 import com.example.demo.chat.dto.ValueUpdateRequest;
 import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
 import com.example.demo.chat.model.MessageSource;
 import com.example.demo.chat.service.RealtimeStateService.SessionState;
 import com.example.demo.chat.service.RealtimeStateService.UserState;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class ChatService {
 
     private static final int RECENT_MESSAGE_LIMIT = 10;
+    private static final int RESUME_MESSAGE_LIMIT = 200;
     private static final String TOPIC_MESSAGES = "/topic/messages";
     private static final String TOPIC_ONLINE = "/topic/online";
     private static final String TOPIC_GLOBAL_SETTINGS = "/topic/settings/global";
@@ -37,10 +48,43 @@ public class ChatService {
 
     private final RealtimeStateService stateService;
     private final SimpMessagingTemplate messagingTemplate;
-
-    public ChatService(RealtimeStateService stateService, SimpMessagingTemplate messagingTemplate) {
+    private final ChatMessageEncoder encoder;
+    private final ChatCatalog catalog;
+    private final ClusterCoordinator cluster;
+    private final MessageIds ids;
+    private final Map<String, String> userMessageDestinations = new ConcurrentHashMap<>();
+    private final Map<String, String> deviceMessageDestinations = new ConcurrentHashMap<>();
+    private final Map<String, String> deviceControlDestinations = new ConcurrentHashMap<>();
+    private final TimerWheel<String> userTimers;
+    private final TimerWheel<String> deviceTimers;
+    private final PresenceFeed presence = new PresenceFeed();
+    private final ReentrantLock presenceLock = new ReentrantLock();
+    private final long presenceFullMs;
+    private long lastFullPresence;
+
+    public ChatService(RealtimeStateService stateService,
+                       SimpMessagingTemplate messagingTemplate,
+                       ChatMessageEncoder encoder,
+                       ChatCatalog catalog,
+                       ClusterCoordinator cluster,
+                       MessageIds ids,
+                       @Value("${app.schedule.user-ms:25000}") long userPeriodMs,
+                       @Value("${app.schedule.user-initial-ms:7000}") long userInitialMs,
+                       @Value("${app.schedule.device-ms:30000}") long devicePeriodMs,
+                       @Value("${app.schedule.device-initial-ms:9000}") long deviceInitialMs,
+                       @Value("${app.schedule.tick-ms:100}") long tickMs,
+                       @Value("${app.presence.full-ms:30000}") long presenceFullMs) {
         this.stateService = stateService;
         this.messagingTemplate = messagingTemplate;
+        this.encoder = encoder;
+        this.catalog = catalog;
+        this.cluster = cluster;
+        this.ids = ids;
+        long now = System.currentTimeMillis();
+        this.userTimers = new TimerWheel<>(userPeriodMs, tickMs, now + userInitialMs);
+        this.deviceTimers = new TimerWheel<>(devicePeriodMs, tickMs, now + deviceInitialMs);
+        this.presenceFullMs = presenceFullMs;
+        cluster.attach(new RemoteEvents());
     }
 
     public void handleRegistration(String sessionId, SessionRegistrationRequest request) {
@@ -48,27 +92,41 @@ public class ChatService {
             if (!StringUtils.hasText(request.me())) {
                 throw new IllegalArgumentException("ME selection is required");
             }
+            boolean wasOnline = isOnline(request.me());
             SessionState sessionState = stateService.assignUser(sessionId, request.me());
+            cluster.sessionRegistered(sessionId, sessionState.userEmoji());
 
             if (StringUtils.hasText(request.sendHere())) {
                 stateService.updateSendHere(sessionId, request.sendHere());
             }
-            if (StringUtils.hasText(request.sendMe())) {
+            Optional<List<EncodedChatMessage>> missed = request.isResume() && stateService.isCurrentEpoch(request.stateVersion())
+                    ? stateService.messagesSince(sessionState.userEmoji(), request.lastSequence(), RESUME_MESSAGE_LIMIT)
+                    : Optional.empty();
+            // While the user stayed online elsewhere a resuming client's SEND ME may be stale: keep the server's
+            // value, which the delta carries if it changed. Otherwise the client's copy is the best there is.
+            boolean keepSendMe = missed.isPresent() && wasOnline;
+            if (!keepSendMe && StringUtils.hasText(request.sendMe())) {
                 stateService.updateSendMe(sessionState.userEmoji(), request.sendMe());
+                cluster.sendMeChanged(sessionState.userEmoji(), request.sendMe());
+            } else {
+                cluster.sendMe(sessionState.userEmoji()).ifPresent(value -> stateService.updateSendMe(sessionState.userEmoji(), value));
             }
 
             SessionState updatedSession = stateService.findSession(sessionId).orElseThrow();
             UserState userState = stateService.findUser(updatedSession.userEmoji())
                     .orElseThrow(() -> new IllegalStateException("User state missing for emoji " + updatedSession.userEmoji()));
 
-            List<ChatMessagePayload> recentMessages = stateService.recentMessagesFor(userState.emoji(), sessionId, RECENT_MESSAGE_LIMIT)
-                    .stream()
-                    .map(this::mapToPayload)
-                    .toList();
+            userTimers.add(userState.emoji());
+            deviceTimers.add(sessionId);
 
-            sendSnapshot(sessionId, updatedSession, userState, recentMessages);
-            sendSendMeUpdate(userState.emoji(), userState.sendMe());
-            broadcastOnlineUsers();
+            if (missed.isPresent()) {
+                sendDelta(sessionId, userState, request.stateVersion(), missed.get());
+            } else {
+                List<EncodedChatMessage> recentMessages = stateService.recentMessagesFor(userState.emoji(), sessionId, RECENT_MESSAGE_LIMIT);
+                sendSnapshot(sessionId, updatedSession, userState, recentMessages);
+                sendSendMeUpdate(userState.emoji(), userState.sendMe());
+            }
+            presence.markDirty();
         } catch (IllegalArgumentException ex) {
             sendError(sessionId, ex.getMessage());
         }
@@ -83,7 +141,7 @@ public class ChatService {
 
         String sender = sessionOpt.get().userEmoji();
         String content = request.content();
-        if (!AppConstants.FOOD_EMOJIS.contains(content)) {
+        if (!EmojiCodec.isFood(content)) {
             sendError(sessionId, "Message must be one of the available food emojis.");
             return;
         }
@@ -91,22 +149,18 @@ public class ChatService {
         String target = StringUtils.hasText(request.target()) ? request.target() : AppConstants.EVERYONE;
 
         if (AppConstants.EVERYONE.equals(target)) {
-            ChatMessage broadcast = ChatMessage.broadcast(sender, content, MessageSource.USER_MESSAGE);
-            stateService.appendMessage(broadcast);
-            messagingTemplate.convertAndSend(TOPIC_MESSAGES, mapToPayload(broadcast));
+            distribute(record(ChatMessage.broadcast(ids, sender, content, MessageSource.USER_MESSAGE)), TOPIC_MESSAGES);
             return;
         }
 
-        if (!AppConstants.ANIMAL_EMOJIS.contains(target)) {
+        if (!EmojiCodec.isAnimal(target)) {
             sendError(sessionId, "Unknown SEND TO target: " + target);
             return;
         }
 
-        ChatMessage message = ChatMessage.userTargeted(sender, target, content, MessageSource.USER_MESSAGE);
-        stateService.appendMessage(message);
+        EncodedChatMessage message = record(ChatMessage.userTargeted(ids, sender, target, content, MessageSource.USER_MESSAGE));
 
-        messagingTemplate.convertAndSend(userMessagesDestination(target), mapToPayload(message));
-        messagingTemplate.convertAndSend(userMessagesDestination(sender), mapToPayload(message));
+        distribute(message, userMessagesDestination(target), userMessagesDestination(sender));
     }
 
     public void handleSendUsUpdate(String sessionId, ValueUpdateRequest request) {
@@ -116,6 +170,7 @@ public class ChatService {
         }
         try {
             String newValue = stateService.updateSendUs(request.value());
+            cluster.sendUsChanged(newValue);
             sendSendUsUpdate(newValue);
         } catch (IllegalArgumentException ex) {
             sendError(sessionId, ex.getMessage());
@@ -136,8 +191,11 @@ public class ChatService {
 
         String userEmoji = sessionOpt.get().userEmoji();
         try {
-            UserState updated = stateService.updateSendMe(userEmoji, request.value());
-            sendSendMeUpdate(updated.emoji(), updated.sendMe());
+            // Empty if the user's last session disconnected meanwhile; there is nobody left to tell.
+            stateService.updateSendMe(userEmoji, request.value()).ifPresent(updated -> {
+                cluster.sendMeChanged(updated.emoji(), updated.sendMe());
+                sendSendMeUpdate(updated.emoji(), updated.sendMe());
+            });
         } catch (IllegalArgumentException ex) {
             sendError(sessionId, ex.getMessage());
         }
@@ -150,70 +208,157 @@ public class ChatService {
         }
         try {
             SessionState sessionState = stateService.updateSendHere(sessionId, request.value());
+            deviceTimers.add(sessionId);
             messagingTemplate.convertAndSend(deviceControlDestination(sessionId), new SendHerePayload(sessionId, sessionState.sendHere()));
         } catch (IllegalArgumentException ex) {
             sendError(sessionId, ex.getMessage());
         }
     }
 
+    /**
+     * Tells a session that frames it sent to {@code destination} are being dropped for exceeding the rate limit.
+     */
+    public void notifyThrottled(String sessionId, String destination) {
+        sendError(sessionId, "Too many requests to " + destination + ", slow down.");
+    }
+
     public void handleDisconnect(String sessionId) {
+        String userEmoji = stateService.findSession(sessionId).map(SessionState::userEmoji).orElse(null);
         stateService.removeSession(sessionId);
-        broadcastOnlineUsers();
+        cluster.sessionRemoved(sessionId);
+        deviceTimers.remove(sessionId);
+        if (userEmoji != null && !isOnline(userEmoji)) {
+            retireUserTimer(userEmoji);
+        }
+        deviceMessageDestinations.remove(sessionId);
+        deviceControlDestinations.remove(sessionId);
+        presence.markDirty();
     }
 
     @Scheduled(initialDelayString = "${app.schedule.broadcast-initial-ms:5000}", fixedRateString = "${app.schedule.broadcast-ms:20000}")
     public void emitBroadcastSchedule() {
-        if (stateService.sessionStates().isEmpty()) {
+        if (!cluster.isLeader() || (stateService.sessionCount() == 0 && !cluster.hasRemoteSessions())) {
             return;
         }
         String content = stateService.currentSendUs();
-        ChatMessage message = ChatMessage.broadcast("SYSTEM", content, MessageSource.SYSTEM_BROADCAST);
-        stateService.appendMessage(message);
-        messagingTemplate.convertAndSend(TOPIC_MESSAGES, mapToPayload(message));
+        distribute(record(ChatMessage.broadcast(ids, AppConstants.SYSTEM_SENDER, content, MessageSource.SYSTEM_BROADCAST)), TOPIC_MESSAGES);
+    }
+
+    /**
+     * The presence list as last published on {@code /topic/online}; later deltas apply on top of it.
+     */
+    public OnlineUsersPayload presence() {
+        return presence.full();
+    }
+
+    /**
+     * Publishes presence: one delta per window for whatever changed in it, plus the full list every
+     * {@code app.presence.full-ms} so clients that missed a delta can resync.
+     */
+    @Scheduled(fixedDelayString = "${app.presence.coalesce-ms:250}")
+    public void publishPresence() {
+        if (!presenceLock.tryLock()) {
+            return;
+        }
+        try {
+            presence.flush(this::onlineUsers).ifPresent(delta -> messagingTemplate.convertAndSend(TOPIC_ONLINE, delta));
+            long now = System.currentTimeMillis();
+            if (now - lastFullPresence >= presenceFullMs) {
+                lastFullPresence = now;
+                messagingTemplate.convertAndSend(TOPIC_ONLINE, presence.full());
+            }
+        } finally {
+            presenceLock.unlock();
+        }
+    }
+
+    /**
+     * Drives the per-user and per-device timer wheels. Each user and session fires once per configured
+     * period at its own phase, so scheduled traffic is spread across the period rather than sent in bursts.
+     */
+    @Scheduled(fixedRateString = "${app.schedule.tick-ms:100}")
+    public void advanceSchedules() {
+        // Fixed-rate ticks may overlap on a virtual-thread scheduler; the wheels skip an overlapping tick.
+        long now = System.currentTimeMillis();
+        userTimers.advance(now, this::emitUserSchedule);
+        deviceTimers.advance(now, this::emitDeviceSchedule);
     }
 
-    @Scheduled(initialDelayString = "${app.schedule.user-initial-ms:7000}", fixedRateString = "${app.schedule.user-ms:25000}")
-    public void emitUserSchedule() {
-        var users = stateService.userStates();
-        if (users.isEmpty()) {
+    void emitUserSchedule(String userEmoji) {
+        if (!isOnline(userEmoji)) {
+            retireUserTimer(userEmoji);
             return;
         }
-        for (UserState user : users) {
-            ChatMessage message = ChatMessage.userTargeted("SYSTEM", user.emoji(), user.sendMe(), MessageSource.SYSTEM_USER_SCHEDULE);
-            stateService.appendMessage(message);
-            messagingTemplate.convertAndSend(userMessagesDestination(user.emoji()), mapToPayload(message));
+        if (!cluster.owns(userEmoji)) {
+            return;
         }
+        String sendMe = stateService.findUser(userEmoji).map(UserState::sendMe)
+                .or(() -> cluster.sendMe(userEmoji))
+                .orElse(AppConstants.DEFAULT_SEND_ME);
+        EncodedChatMessage message = record(ChatMessage.userTargeted(ids, AppConstants.SYSTEM_SENDER, userEmoji, sendMe, MessageSource.SYSTEM_USER_SCHEDULE));
+        distribute(message, userMessagesDestination(userEmoji));
     }
 
-    @Scheduled(initialDelayString = "${app.schedule.device-initial-ms:9000}", fixedRateString = "${app.schedule.device-ms:30000}")
-    public void emitDeviceSchedule() {
-        var sessions = stateService.sessionStates();
-        if (sessions.isEmpty()) {
+    void emitDeviceSchedule(String sessionId) {
+        Optional<SessionState> session = stateService.findSession(sessionId);
+        if (session.isEmpty()) {
+            deviceTimers.remove(sessionId);
             return;
         }
+        EncodedChatMessage message = record(ChatMessage.deviceTargeted(ids, AppConstants.SYSTEM_SENDER, sessionId, session.get().sendHere(), MessageSource.SYSTEM_DEVICE_SCHEDULE));
+        publish(deviceMessagesDestination(sessionId), message);
+    }
 
-        for (SessionState session : sessions) {
-            ChatMessage message = ChatMessage.deviceTargeted("SYSTEM", session.sessionId(), session.sendHere(), MessageSource.SYSTEM_DEVICE_SCHEDULE);
-            stateService.appendMessage(message);
-            messagingTemplate.convertAndSend(deviceMessagesDestination(session.sessionId()), mapToPayload(message));
+    private void retireUserTimer(String userEmoji) {
+        userTimers.remove(userEmoji);
+        // A session may have registered as this user between the lookup and the removal.
+        if (isOnline(userEmoji)) {
+            userTimers.add(userEmoji);
         }
     }
 
-    private void sendSnapshot(String sessionId, SessionState sessionState, UserState userState, List<ChatMessagePayload> recentMessages) {
+    private boolean isOnline(String userEmoji) {
+        return stateService.isOnline(userEmoji) || cluster.remoteUsers().contains(userEmoji);
+    }
+
+    private List<String> onlineUsers() {
+        return cluster.onlineUsers(stateService.onlineUsers());
+    }
+
+    private void sendSnapshot(String sessionId, SessionState sessionState, UserState userState, List<EncodedChatMessage> recentMessages) {
         SessionSnapshot snapshot = new SessionSnapshot(
                 sessionId,
                 userState.emoji(),
                 userState.sendMe(),
                 sessionState.sendHere(),
                 stateService.currentSendUs(),
-                stateService.onlineUsers(),
+                presence.version(),
+                onlineUsers(),
                 recentMessages,
-                AppConstants.ANIMAL_EMOJIS,
-                AppConstants.FOOD_EMOJIS
+                catalog.version(),
+                stateService.stateVersion(),
+                stateService.lastMessageSequence()
         );
         messagingTemplate.convertAndSend(deviceControlDestination(sessionId), snapshot);
     }
 
+    private void sendDelta(String sessionId, UserState userState, String clientVersion, List<EncodedChatMessage> missedMessages) {
+        String version = stateService.stateVersion();
+        boolean settingsChanged = !version.equals(clientVersion);
+        SessionDelta delta = new SessionDelta(
+                sessionId,
+                userState.emoji(),
+                settingsChanged ? userState.sendMe() : null,
+                settingsChanged ? stateService.currentSendUs() : null,
+                presence.version(),
+                onlineUsers(),
+                missedMessages,
+                version,
+                stateService.lastMessageSequence()
+        );
+        messagingTemplate.convertAndSend(deviceControlDestination(sessionId), delta);
+    }
+
     private void sendSendMeUpdate(String userEmoji, String value) {
         messagingTemplate.convertAndSend(userSettingsDestination(userEmoji), new SendMePayload(userEmoji, value));
     }
@@ -222,33 +367,29 @@ public class ChatService {
         messagingTemplate.convertAndSend(TOPIC_GLOBAL_SETTINGS, new SendUsPayload(value));
     }
 
-    private void broadcastOnlineUsers() {
-        messagingTemplate.convertAndSend(TOPIC_ONLINE, new OnlineUsersPayload(stateService.onlineUsers()));
-    }
-
     private void sendError(String sessionId, String message) {
         messagingTemplate.convertAndSend(deviceControlDestination(sessionId), new ErrorPayload(message));
     }
 
-    private ChatMessagePayload mapToPayload(ChatMessage message) {
-        String target = switch (message.audience()) {
-            case EVERYONE -> AppConstants.EVERYONE;
-            case USER -> message.targetUser();
-            case DEVICE -> message.targetSession();
-        };
-        return new ChatMessagePayload(
-                message.id(),
-                message.timestamp().toString(),
-                message.sender(),
-                target,
-                message.audience().name(),
-                message.source().name(),
-                message.content()
-        );
+    private EncodedChatMessage record(ChatMessage message) {
+        EncodedChatMessage encoded = encoder.encode(message, stateService.nextMessageSequence());
+        stateService.appendMessage(encoded);
+        return encoded;
+    }
+
+    private void publish(String destination, EncodedChatMessage message) {
+        messagingTemplate.send(destination, message.frame());
+    }
+
+    private void distribute(EncodedChatMessage message, String... destinations) {
+        for (String destination : destinations) {
+            publish(destination, message);
+        }
+        cluster.replicate(message, destinations);
     }
 
     private String userMessagesDestination(String userEmoji) {
-        return TEMPLATE_USER_MESSAGES.formatted(userEmoji);
+        return userMessageDestinations.computeIfAbsent(userEmoji, TEMPLATE_USER_MESSAGES::formatted);
     }
 
     private String userSettingsDestination(String userEmoji) {
@@ -256,10 +397,40 @@ public class ChatService {
     }
 
     private String deviceMessagesDestination(String sessionId) {
-        return TEMPLATE_DEVICE_MESSAGES.formatted(sessionId);
+        return deviceMessageDestinations.computeIfAbsent(sessionId, TEMPLATE_DEVICE_MESSAGES::formatted);
     }
 
     private String deviceControlDestination(String sessionId) {
-        return TEMPLATE_DEVICE_CONTROL.formatted(sessionId);
+        return deviceControlDestinations.computeIfAbsent(sessionId, TEMPLATE_DEVICE_CONTROL::formatted);
+    }
+
+    private final class RemoteEvents implements ClusterEventHandler {
+
+        @Override
+        public void onPresenceChanged(Set<String> remoteUsers) {
+            remoteUsers.forEach(userTimers::add);
+            presence.markDirty();
+        }
+
+        @Override
+        public void onSendUsChanged(String value) {
+            stateService.updateSendUs(value);
+            sendSendUsUpdate(value);
+        }
+
+        @Override
+        public void onSendMeChanged(String userEmoji, String value) {
+            stateService.updateSendMe(userEmoji, value);
+            sendSendMeUpdate(userEmoji, value);
+        }
+
+        @Override
+        public void onMessage(EncodedChatMessage message, List<String> deliverTo) {
+            // Sequences are per node, so the payload is re-encoded under a local one before delivery.
+            EncodedChatMessage local = record(message.message());
+            for (String destination : deliverTo) {
+                publish(destination, local);
+            }
+        }
     }
 }
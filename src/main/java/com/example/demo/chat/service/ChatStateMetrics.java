@@ -0,0 +1,33 @@
+package com.example.demo.chat.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ChatStateMetrics implements MeterBinder {
+
+    private final RealtimeStateService stateService;
+
+    public ChatStateMetrics(RealtimeStateService stateService) {
+        this.stateService = stateService;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.sessions", stateService, RealtimeStateService::sessionCount)
+                .description("Registered STOMP sessions")
+                .register(registry);
+        Gauge.builder("chat.users", stateService, RealtimeStateService::userCount)
+                .description("Online user identities")
+                .register(registry);
+        Gauge.builder("chat.history.size", stateService, RealtimeStateService::historySize)
+                .description("Messages retained across all history windows")
+                .register(registry);
+        FunctionCounter.builder("chat.history.evicted.connected", stateService, RealtimeStateService::evictedConnectedWindows)
+                .description("Device history windows of connected sessions dropped to stay within the entry budget")
+                .register(registry);
+    }
+}
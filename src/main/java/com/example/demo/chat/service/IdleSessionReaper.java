@@ -0,0 +1,107 @@
+package com.example.demo.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evicts sessions that have sent nothing, not even a heartbeat, for {@code app.heartbeat.idle-timeout}.
+ * Every inbound frame counts as activity. Sessions sit on a timer wheel that checks each of them once per
+ * half timeout, so a silent session goes within 1.5 timeouts. Eviction runs the same cleanup as a
+ * disconnect and then closes the connection by sending it a DISCONNECT_ACK, as the broker does for missed
+ * heartbeats. A zero timeout disables the reaper.
+ */
+@Component
+public class IdleSessionReaper {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdleSessionReaper.class);
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+    private final ChatService chatService;
+    private final MessageChannel clientOutboundChannel;
+    private final long idleTimeoutMs;
+    private final Map<String, AtomicLong> lastSeen = new ConcurrentHashMap<>();
+    private final TimerWheel<String> checks;
+    private final Counter reaped;
+
+    public IdleSessionReaper(ChatService chatService,
+                             @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.heartbeat.idle-timeout:2m}") Duration idleTimeout,
+                             @Value("${app.schedule.tick-ms:100}") long tickMs) {
+        this.chatService = chatService;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.idleTimeoutMs = idleTimeout.toMillis();
+        this.checks = new TimerWheel<>(Math.max(tickMs, idleTimeoutMs / 2), tickMs, System.currentTimeMillis());
+        this.reaped = Counter.builder("chat.sessions.reaped")
+                .description("Sessions evicted after sending nothing for the idle timeout")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.sessions.tracked", lastSeen, Map::size);
+    }
+
+    public boolean isEnabled() {
+        return idleTimeoutMs > 0;
+    }
+
+    public void touch(String sessionId) {
+        touch(sessionId, System.currentTimeMillis());
+    }
+
+    void touch(String sessionId, long nowMillis) {
+        if (!isEnabled()) {
+            return;
+        }
+        AtomicLong seen = lastSeen.get(sessionId);
+        if (seen != null) {
+            seen.set(nowMillis);
+        } else if (lastSeen.putIfAbsent(sessionId, new AtomicLong(nowMillis)) == null) {
+            checks.add(sessionId);
+        }
+    }
+
+    public void forget(String sessionId) {
+        if (lastSeen.remove(sessionId) != null) {
+            checks.remove(sessionId);
+        }
+    }
+
+    @Scheduled(fixedRateString = "${app.schedule.tick-ms:100}")
+    public void reapIdleSessions() {
+        if (isEnabled()) {
+            reap(System.currentTimeMillis());
+        }
+    }
+
+    void reap(long nowMillis) {
+        checks.advance(nowMillis, sessionId -> {
+            AtomicLong seen = lastSeen.get(sessionId);
+            if (seen != null && nowMillis - seen.get() >= idleTimeoutMs) {
+                evict(sessionId);
+            }
+        });
+    }
+
+    private void evict(String sessionId) {
+        logger.debug("Evicting session {}: idle for over {} ms", sessionId, idleTimeoutMs);
+        forget(sessionId);
+        reaped.increment();
+        chatService.handleDisconnect(sessionId);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        clientOutboundChannel.send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+    }
+}
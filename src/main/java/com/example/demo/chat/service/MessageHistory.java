@@ -0,0 +1,314 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageAudience;
+import com.example.demo.chat.model.MessageSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message history split by audience: one window for broadcasts, one per target user and one per
+ * target session. A user's private messages therefore survive broadcast floods, and assembling the
+ * recent messages for a session only touches the three windows that can contain them.
+ *
+ * <p>Per-user and per-session windows are allocated lazily against a shared entry budget. When the budget
+ * is exhausted, windows of sessions that are no longer connected go first, then the least recently written
+ * session window, then user window. Candidates come from per-kind queues in creation order, and a window
+ * written since it was queued gets a second chance at the back (CLOCK), so an eviction never scans the
+ * whole index. The queues are only locked when a window is created or released, never on append.
+ *
+ * <p>With a {@link MessageJournal} the windows act as a cache over it: every append is handed to the
+ * journal, and on startup the newest journaled broadcasts and user messages are loaded back and
+ * sequencing resumes after the last durable entry. Session windows are not restored because session
+ * ids do not survive a restart.
+ */
+@Component
+public final class MessageHistory {
+
+    private static final Comparator<SequencedMessage> BY_SEQUENCE = Comparator.comparingLong(SequencedMessage::sequence);
+
+    private final AtomicLong sequence = new AtomicLong(-1);
+    private final MessageRingBuffer broadcasts;
+    private final Map<String, MessageRingBuffer> byUser = new ConcurrentHashMap<>();
+    private final Map<String, MessageRingBuffer> bySession = new ConcurrentHashMap<>();
+    private final Set<String> connectedSessions = ConcurrentHashMap.newKeySet();
+    private final EvictionQueue detachedQueue = new EvictionQueue();
+    private final EvictionQueue sessionQueue = new EvictionQueue();
+    private final EvictionQueue userQueue = new EvictionQueue();
+    private final LongAdder evictedConnectedWindows = new LongAdder();
+    private final int userCapacity;
+    private final int sessionCapacity;
+    private final int entryBudget;
+    private final AtomicInteger allocatedEntries = new AtomicInteger();
+    private final AtomicLong evictedUserSequence = new AtomicLong(-1);
+    private final MessageJournal journal;
+
+    public MessageHistory(int broadcastCapacity, int userCapacity, int sessionCapacity, int entryBudget) {
+        this(broadcastCapacity, userCapacity, sessionCapacity, entryBudget, MessageJournal.NONE, null, 0);
+    }
+
+    @Autowired
+    public MessageHistory(@Value("${app.history.broadcast-capacity:200}") int broadcastCapacity,
+                          @Value("${app.history.user-capacity:50}") int userCapacity,
+                          @Value("${app.history.session-capacity:20}") int sessionCapacity,
+                          @Value("${app.history.entry-budget:50000}") int entryBudget,
+                          ObjectProvider<MessageJournal> journal,
+                          ChatMessageEncoder encoder,
+                          @Value("${app.store.replay:5000}") int replayLimit) {
+        this(broadcastCapacity, userCapacity, sessionCapacity, entryBudget,
+                journal.getIfAvailable(() -> MessageJournal.NONE), encoder, replayLimit);
+    }
+
+    MessageHistory(int broadcastCapacity, int userCapacity, int sessionCapacity, int entryBudget,
+                   MessageJournal journal, ChatMessageEncoder encoder, int replayLimit) {
+        this.broadcasts = new MessageRingBuffer(broadcastCapacity);
+        this.userCapacity = userCapacity;
+        this.sessionCapacity = sessionCapacity;
+        this.entryBudget = entryBudget;
+        this.journal = journal;
+        if (replayLimit > 0) {
+            journal.replay(replayLimit, (sequence, message) -> {
+                if (message.audience() != MessageAudience.DEVICE) {
+                    index(new SequencedMessage(sequence, encoder.encode(message, sequence)));
+                }
+            });
+        }
+        this.sequence.set(journal.lastSequence());
+    }
+
+    /**
+     * Reserves the sequence for a message that is about to be appended, so it can be embedded in the payload.
+     */
+    public long nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * Appends under the sequence embedded in {@code encoded}, or under a fresh one when it carries none.
+     */
+    public long append(EncodedChatMessage encoded) {
+        long assigned = encoded.sequence() >= 0 ? encoded.sequence() : sequence.incrementAndGet();
+        SequencedMessage entry = new SequencedMessage(assigned, encoded);
+        index(entry);
+        journal.record(entry.sequence(), encoded.message());
+        return entry.sequence();
+    }
+
+    private void index(SequencedMessage entry) {
+        ChatMessage message = entry.message().message();
+        switch (message.audience()) {
+            case EVERYONE -> broadcasts.append(entry);
+            case USER -> {
+                windowFor(byUser, message.targetUser(), userCapacity, userQueue).append(entry);
+                if (message.source() == MessageSource.USER_MESSAGE && !message.sender().equals(message.targetUser())) {
+                    windowFor(byUser, message.sender(), userCapacity, userQueue).append(entry);
+                }
+            }
+            case DEVICE -> windowFor(bySession, message.targetSession(), sessionCapacity,
+                    connectedSessions.contains(message.targetSession()) ? sessionQueue : detachedQueue).append(entry);
+        }
+    }
+
+    /**
+     * Newest {@code limit} messages visible to a session, oldest first. Reads at most
+     * {@code 3 * limit} entries regardless of how much unrelated traffic is retained.
+     */
+    public List<EncodedChatMessage> recentFor(String userEmoji, String sessionId, int limit) {
+        List<SequencedMessage> candidates = new ArrayList<>(limit * 3);
+        candidates.addAll(broadcasts.latest(limit));
+        if (userEmoji != null) {
+            MessageRingBuffer userWindow = byUser.get(userEmoji);
+            if (userWindow != null) {
+                candidates.addAll(userWindow.latest(limit));
+            }
+        }
+        MessageRingBuffer sessionWindow = bySession.get(sessionId);
+        if (sessionWindow != null) {
+            candidates.addAll(sessionWindow.latest(limit));
+        }
+        candidates.sort(BY_SEQUENCE);
+        int from = Math.max(0, candidates.size() - limit);
+        List<EncodedChatMessage> result = new ArrayList<>(candidates.size() - from);
+        for (int i = from; i < candidates.size(); i++) {
+            result.add(candidates.get(i).message());
+        }
+        return result;
+    }
+
+    /**
+     * Broadcasts and messages for {@code userEmoji} with a sequence above {@code afterSequence}, oldest
+     * first. Empty when the windows no longer hold all of them, or when there are more than {@code limit},
+     * in which case the caller should fall back to {@link #recentFor}.
+     */
+    public Optional<List<EncodedChatMessage>> since(String userEmoji, long afterSequence, int limit) {
+        if (afterSequence < -1 || afterSequence > sequence.get()) {
+            return Optional.empty();
+        }
+        MessageRingBuffer userWindow = byUser.get(userEmoji);
+        if (broadcasts.evictedSequence() > afterSequence || evictedUserSequence.get() > afterSequence
+                || (userWindow != null && userWindow.evictedSequence() > afterSequence)) {
+            return Optional.empty();
+        }
+        List<SequencedMessage> missed = new ArrayList<>();
+        boolean complete = broadcasts.collectAfter(afterSequence, missed)
+                && (userWindow == null || userWindow.collectAfter(afterSequence, missed));
+        // Writers keep going while this reads, so the watermarks are checked again afterwards: a window that
+        // wrapped, or a user window released, in the meantime may have taken part of the delta with it.
+        if (!complete || evictedUserSequence.get() > afterSequence || missed.size() > limit) {
+            return Optional.empty();
+        }
+        missed.sort(BY_SEQUENCE);
+        List<EncodedChatMessage> result = new ArrayList<>(missed.size());
+        for (SequencedMessage entry : missed) {
+            result.add(entry.message());
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Marks a session as connected, so its window is only evicted once windows of gone sessions are.
+     */
+    public void openSession(String sessionId) {
+        connectedSessions.add(sessionId);
+    }
+
+    public void forgetSession(String sessionId) {
+        connectedSessions.remove(sessionId);
+        release(bySession, sessionId);
+    }
+
+    /**
+     * Windows of still-connected sessions dropped to stay within the entry budget; such a session no
+     * longer gets its own earlier device messages in a snapshot.
+     */
+    public long evictedConnectedWindows() {
+        return evictedConnectedWindows.sum();
+    }
+
+    public long lastSequence() {
+        return sequence.get();
+    }
+
+    public int size() {
+        int size = broadcasts.size();
+        for (MessageRingBuffer window : byUser.values()) {
+            size += window.size();
+        }
+        for (MessageRingBuffer window : bySession.values()) {
+            size += window.size();
+        }
+        return size;
+    }
+
+    private MessageRingBuffer windowFor(Map<String, MessageRingBuffer> index, String key, int capacity, EvictionQueue queue) {
+        MessageRingBuffer window = index.get(key);
+        if (window != null) {
+            return window;
+        }
+        allocatedEntries.addAndGet(capacity);
+        MessageRingBuffer created = new MessageRingBuffer(capacity);
+        MessageRingBuffer existing = index.putIfAbsent(key, created);
+        if (existing != null) {
+            allocatedEntries.addAndGet(-capacity);
+            return existing;
+        }
+        // Queued after evicting, so the window being created is never its own victim.
+        while (allocatedEntries.get() > entryBudget && (evict(detachedQueue, bySession)
+                || evict(sessionQueue, bySession) || evict(userQueue, byUser))) {
+            // keep evicting until we are back under budget or nothing else can go
+        }
+        queue.add(key, created);
+        return created;
+    }
+
+    private boolean evict(EvictionQueue queue, Map<String, MessageRingBuffer> index) {
+        Map.Entry<String, MessageRingBuffer> victim = queue.evict();
+        if (victim == null) {
+            return false;
+        }
+        if (index.remove(victim.getKey(), victim.getValue())) {
+            onReleased(index, victim.getKey(), victim.getValue());
+            if (queue == sessionQueue) {
+                evictedConnectedWindows.increment();
+            }
+        }
+        return true;
+    }
+
+    private void release(Map<String, MessageRingBuffer> index, String key) {
+        MessageRingBuffer removed = index.remove(key);
+        if (removed != null) {
+            (index == byUser ? userQueue : sessionQueue).remove(key, removed);
+            detachedQueue.remove(key, removed);
+            onReleased(index, key, removed);
+        }
+    }
+
+    private void onReleased(Map<String, MessageRingBuffer> index, String key, MessageRingBuffer removed) {
+        allocatedEntries.addAndGet(-removed.capacity());
+        if (index == byUser) {
+            // the user's messages are gone from memory; resumes from before this point need a full snapshot
+            evictedUserSequence.accumulateAndGet(removed.newestSequence(), Math::max);
+        }
+    }
+
+    private record Candidate(MessageRingBuffer window, long seenSequence) {
+    }
+
+    /**
+     * Windows of one kind in queue order, each with the newest sequence it held when last queued.
+     */
+    private static final class EvictionQueue {
+
+        private final LinkedHashMap<String, Candidate> queued = new LinkedHashMap<>();
+
+        synchronized void add(String key, MessageRingBuffer window) {
+            queued.put(key, new Candidate(window, window.newestSequence()));
+        }
+
+        synchronized void remove(String key, MessageRingBuffer window) {
+            Candidate candidate = queued.get(key);
+            if (candidate != null && candidate.window() == window) {
+                queued.remove(key);
+            }
+        }
+
+        /**
+         * Takes the oldest window not written since it was queued. Written ones move to the back; after a
+         * full round every window has had its second chance, so the next one goes regardless.
+         */
+        synchronized Map.Entry<String, MessageRingBuffer> evict() {
+            int secondChances = queued.size();
+            while (!queued.isEmpty()) {
+                Iterator<Map.Entry<String, Candidate>> head = queued.entrySet().iterator();
+                Map.Entry<String, Candidate> oldest = head.next();
+                String key = oldest.getKey();
+                Candidate candidate = oldest.getValue();
+                head.remove();
+                long newest = candidate.window().newestSequence();
+                if (newest > candidate.seenSequence() && secondChances-- > 0) {
+                    queued.put(key, new Candidate(candidate.window(), newest));
+                    continue;
+                }
+                return Map.entry(key, candidate.window());
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.model.ChatMessage;
+
+/**
+ * Durable record of appended history. {@link #record} is called on the publish path and must only hand
+ * the message off; {@link #replay} and {@link #lastSequence} are used once, when the history is built.
+ */
+public interface MessageJournal {
+
+    MessageJournal NONE = new MessageJournal() {
+        @Override
+        public void record(long sequence, ChatMessage message) {
+        }
+
+        @Override
+        public long lastSequence() {
+            return -1;
+        }
+
+        @Override
+        public void replay(int limit, EntryConsumer consumer) {
+        }
+    };
+
+    void record(long sequence, ChatMessage message);
+
+    /**
+     * Highest durable sequence, or {@code -1} when the journal is empty.
+     */
+    long lastSequence();
+
+    /**
+     * Newest {@code limit} entries, oldest first.
+     */
+    void replay(int limit, EntryConsumer consumer);
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long sequence, ChatMessage message);
+    }
+}
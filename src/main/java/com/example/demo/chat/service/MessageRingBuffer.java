@@ -0,0 +1,127 @@
+package com.example.demo.chat.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free message window. Writers claim a slot number and publish into the slot
+ * {@code slot % capacity}; readers walk back from the last claimed slot and only accept an entry
+ * that carries the slot number they expect, so a reader never blocks a writer and never returns a
+ * half-overwritten window.
+ */
+final class MessageRingBuffer {
+
+    private final int capacity;
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final AtomicLong newestSequence = new AtomicLong(-1);
+    private final AtomicLong evictedSequence = new AtomicLong(-1);
+
+    MessageRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    void append(SequencedMessage message) {
+        long slot = nextSlot.getAndIncrement();
+        Slot entry = new Slot(slot, message);
+        int index = indexOf(slot);
+        while (true) {
+            Slot current = slots.get(index);
+            if (current != null && current.slot() > slot) {
+                // A writer that lapped us already published newer data here; ours is out of the window and
+                // counts as evicted, so a resume that needs it falls back to a snapshot.
+                evictedSequence.accumulateAndGet(message.sequence(), Math::max);
+                break;
+            }
+            // Raised before the slot is overwritten, so a reader that finds the slot overwritten also sees this.
+            if (current != null) {
+                evictedSequence.accumulateAndGet(current.message().sequence(), Math::max);
+            }
+            if (slots.compareAndSet(index, current, entry)) {
+                break;
+            }
+        }
+        newestSequence.accumulateAndGet(message.sequence(), Math::max);
+    }
+
+    /**
+     * Returns up to {@code limit} of the newest messages, oldest first.
+     */
+    List<SequencedMessage> latest(int limit) {
+        List<SequencedMessage> result = new ArrayList<>(Math.min(limit, capacity));
+        long head = nextSlot.get() - 1;
+        long oldest = Math.max(0, head - capacity + 1);
+        for (long slot = head; slot >= oldest && result.size() < limit; slot--) {
+            Slot entry = slots.get(indexOf(slot));
+            if (entry == null || entry.slot() < slot) {
+                // Claimed but not yet published.
+                continue;
+            }
+            if (entry.slot() > slot) {
+                // Overwritten by a newer lap; everything older is gone too.
+                break;
+            }
+            result.add(entry.message());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Adds every retained message with a sequence above {@code afterSequence} to {@code into}, in no particular
+     * order. Returns {@code false} when the window cannot vouch for having all of them: a slot is claimed but
+     * not yet published, or something above {@code afterSequence} has been overwritten, even while reading.
+     */
+    boolean collectAfter(long afterSequence, List<SequencedMessage> into) {
+        long head = nextSlot.get() - 1;
+        long oldest = Math.max(0, head - capacity + 1);
+        for (long slot = head; slot >= oldest; slot--) {
+            Slot entry = slots.get(indexOf(slot));
+            if (entry == null || entry.slot() < slot) {
+                return false;
+            }
+            if (entry.slot() > slot) {
+                // Overwritten by a newer lap; the watermark read below covers it.
+                break;
+            }
+            if (entry.message().sequence() > afterSequence) {
+                into.add(entry.message());
+            }
+        }
+        return evictedSequence.get() <= afterSequence;
+    }
+
+    /**
+     * Highest sequence that has been overwritten, or {@code -1} while the window has never wrapped.
+     * Everything newer than this is still retained.
+     */
+    long evictedSequence() {
+        return evictedSequence.get();
+    }
+
+    long newestSequence() {
+        return newestSequence.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return (int) Math.min(nextSlot.get(), capacity);
+    }
+
+    private int indexOf(long slot) {
+        return (int) (slot % capacity);
+    }
+
+    private record Slot(long slot, SequencedMessage message) {
+    }
+}
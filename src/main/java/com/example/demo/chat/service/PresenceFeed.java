@@ -0,0 +1,69 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.example.demo.chat.dto.PresenceDeltaPayload;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces presence changes. Callers only {@link #markDirty() mark} that something changed; a periodic
+ * {@link #flush} compares the current online list with the last published one and emits at most one
+ * versioned delta, however many registrations and disconnects happened in between.
+ */
+final class PresenceFeed {
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private List<String> published = List.of();
+    private long version;
+
+    void markDirty() {
+        dirty.set(true);
+    }
+
+    /**
+     * Delta from the last published state to {@code current}, if anything changed since the last flush.
+     */
+    synchronized Optional<PresenceDeltaPayload> flush(Supplier<List<String>> current) {
+        if (!dirty.getAndSet(false)) {
+            return Optional.empty();
+        }
+        List<String> now = current.get();
+        if (now.equals(published)) {
+            return Optional.empty();
+        }
+        Set<String> before = new HashSet<>(published);
+        Set<String> after = new HashSet<>(now);
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        for (String user : now) {
+            if (!before.contains(user)) {
+                joined.add(user);
+            }
+        }
+        for (String user : published) {
+            if (!after.contains(user)) {
+                left.add(user);
+            }
+        }
+        published = now;
+        version++;
+        return Optional.of(new PresenceDeltaPayload(version, joined, left));
+    }
+
+    /**
+     * The last published state, for clients to resync from.
+     */
+    synchronized OnlineUsersPayload full() {
+        return new OnlineUsersPayload(published, version);
+    }
+
+    synchronized long version() {
+        return version;
+    }
+}
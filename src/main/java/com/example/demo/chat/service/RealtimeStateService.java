@@ -1,87 +1,145 @@
 package com.example.demo.chat.service;
 
 import com.example.demo.chat.AppConstants;
-import com.example.demo.chat.model.ChatMessage;
-import com.example.demo.chat.model.MessageAudience;
-import com.example.demo.chat.model.MessageSource;
+import com.example.demo.chat.EmojiCodec;
+import com.example.demo.chat.dto.EncodedChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class RealtimeStateService {
 
-    private static final int HISTORY_LIMIT = 200;
+    private static final int LOCK_STRIPES = 64;
+
+    static {
+        // presence is one bit per animal, and every combination may get a cached list
+        if (EmojiCodec.ANIMALS > 16) {
+            throw new IllegalStateException("Presence tracking supports at most 16 animals");
+        }
+    }
 
     private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
-    private final Map<String, UserState> users = new ConcurrentHashMap<>();
-    private final ArrayDeque<ChatMessage> history = new ArrayDeque<>();
-    private final ReadWriteLock historyLock = new ReentrantReadWriteLock();
+    // Indexed by animal ordinal; a user is present exactly while it has sessions, i.e. while it is online.
+    private final AtomicReferenceArray<UserState> users = new AtomicReferenceArray<>(EmojiCodec.ANIMALS);
+    private final AtomicLong onlineBits = new AtomicLong();
+    // Lists for each presence bitset, built on first use: at most 2^ANIMALS of them.
+    private final AtomicReferenceArray<List<String>> onlineLists = new AtomicReferenceArray<>(1 << EmojiCodec.ANIMALS);
+    private final MessageHistory history;
+    // Lock order: a session stripe may be held while taking user stripes, never the reverse.
+    private final StripedLocks sessionLocks;
+    private final StripedLocks userLocks;
     private volatile String sendUsValue = AppConstants.DEFAULT_SEND_US;
+    // Message sequences and settings versions only mean something within this process.
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 1);
+    private final AtomicLong settingsVersion = new AtomicLong();
+
+    @Autowired
+    public RealtimeStateService(MessageHistory history) {
+        this(history, new StripedLocks(LOCK_STRIPES), new StripedLocks(LOCK_STRIPES));
+    }
+
+    RealtimeStateService(MessageHistory history, StripedLocks sessionLocks, StripedLocks userLocks) {
+        this.history = history;
+        this.sessionLocks = sessionLocks;
+        this.userLocks = userLocks;
+    }
 
     public SessionState ensureSession(String sessionId) {
-        return sessions.computeIfAbsent(sessionId, id -> new SessionState(id, null, AppConstants.DEFAULT_SEND_HERE, Instant.now()));
+        return sessions.computeIfAbsent(sessionId, id -> {
+            history.openSession(id);
+            return new SessionState(id, null, AppConstants.DEFAULT_SEND_HERE, Instant.now());
+        });
     }
 
-    public synchronized SessionState assignUser(String sessionId, String userEmoji) {
-        validateAnimal(userEmoji);
-        SessionState session = ensureSession(sessionId);
-        String previousUser = session.userEmoji;
-        if (Objects.equals(previousUser, userEmoji)) {
-            return session;
-        }
+    public SessionState assignUser(String sessionId, String emoji) {
+        int user = animalOrdinal(emoji);
+        String userEmoji = EmojiCodec.animalAt(user);
+        ReentrantLock sessionLock = sessionLocks.stripe(sessionId);
+        sessionLock.lock();
+        try {
+            SessionState session = ensureSession(sessionId);
+            String previousUser = session.userEmoji;
+            if (Objects.equals(previousUser, userEmoji)) {
+                return session;
+            }
 
-        if (previousUser != null) {
-            UserState previous = users.get(previousUser);
-            if (previous != null) {
-                previous.sessionIds.remove(sessionId);
-                if (previous.sessionIds.isEmpty()) {
-                    users.remove(previousUser);
+            Integer previous = previousUser == null ? null : EmojiCodec.animal(previousUser);
+            userLocks.lock(previous, user);
+            try {
+                if (previous != null) {
+                    detachFromUser(previous, sessionId);
                 }
-            }
-        }
 
-        UserState userState = users.computeIfAbsent(userEmoji, key -> new UserState(key, AppConstants.DEFAULT_SEND_ME));
-        userState.sessionIds.add(sessionId);
-        session.userEmoji = userEmoji;
-        if (session.sendHere == null) {
-            session.sendHere = AppConstants.DEFAULT_SEND_HERE;
+                UserState userState = userFor(user);
+                userState.sessionIds.add(sessionId);
+                session.userEmoji = userEmoji;
+                if (session.sendHere == null) {
+                    session.sendHere = AppConstants.DEFAULT_SEND_HERE;
+                }
+                return session;
+            } finally {
+                userLocks.unlock(previous, user);
+            }
+        } finally {
+            sessionLock.unlock();
         }
-        return session;
     }
 
-    public synchronized SessionState updateSendHere(String sessionId, String value) {
-        validateFood(value);
-        SessionState session = ensureSession(sessionId);
-        session.sendHere = value;
-        return session;
+    public SessionState updateSendHere(String sessionId, String value) {
+        String food = canonicalFood(value);
+        ReentrantLock sessionLock = sessionLocks.stripe(sessionId);
+        sessionLock.lock();
+        try {
+            SessionState session = ensureSession(sessionId);
+            session.sendHere = food;
+            return session;
+        } finally {
+            sessionLock.unlock();
+        }
     }
 
-    public synchronized UserState updateSendMe(String userEmoji, String value) {
-        validateAnimal(userEmoji);
-        validateFood(value);
-        UserState userState = users.computeIfAbsent(userEmoji, key -> new UserState(key, AppConstants.DEFAULT_SEND_ME));
-        userState.sendMe = value;
-        return userState;
+    /**
+     * Sets SEND ME for a user that currently has sessions. An offline user has no state to update, and this
+     * never brings one online: the value is empty and nothing changes.
+     */
+    public Optional<UserState> updateSendMe(String userEmoji, String value) {
+        int user = animalOrdinal(userEmoji);
+        String food = canonicalFood(value);
+        ReentrantLock userLock = userLocks.stripe(user);
+        userLock.lock();
+        try {
+            UserState userState = users.get(user);
+            if (userState != null && food != userState.sendMe) {
+                userState.sendMe = food;
+                settingsVersion.incrementAndGet();
+            }
+            return Optional.ofNullable(userState);
+        } finally {
+            userLock.unlock();
+        }
     }
 
-    public synchronized String updateSendUs(String value) {
-        validateFood(value);
-        sendUsValue = value;
-        return sendUsValue;
+    public String updateSendUs(String value) {
+        String food = canonicalFood(value);
+        if (food != sendUsValue) {
+            sendUsValue = food;
+            settingsVersion.incrementAndGet();
+        }
+        return food;
     }
 
     public String currentSendUs() {
@@ -93,107 +151,170 @@ public class RealtimeStateService {
     }
 
     public Optional<UserState> findUser(String userEmoji) {
-        return Optional.ofNullable(users.get(userEmoji));
+        int user = EmojiCodec.animal(userEmoji);
+        return user < 0 ? Optional.empty() : Optional.ofNullable(users.get(user));
+    }
+
+    public boolean isOnline(String userEmoji) {
+        int user = EmojiCodec.animal(userEmoji);
+        return user >= 0 && (onlineBits.get() & 1L << user) != 0;
     }
 
-    public synchronized void removeSession(String sessionId) {
-        SessionState removed = sessions.remove(sessionId);
-        if (removed != null && removed.userEmoji != null) {
-            UserState userState = users.get(removed.userEmoji);
-            if (userState != null) {
-                userState.sessionIds.remove(sessionId);
-                if (userState.sessionIds.isEmpty()) {
-                    users.remove(removed.userEmoji);
+    public void removeSession(String sessionId) {
+        ReentrantLock sessionLock = sessionLocks.stripe(sessionId);
+        sessionLock.lock();
+        try {
+            SessionState removed = sessions.remove(sessionId);
+            history.forgetSession(sessionId);
+            if (removed != null && removed.userEmoji != null) {
+                int user = EmojiCodec.animal(removed.userEmoji);
+                ReentrantLock userLock = userLocks.stripe(user);
+                userLock.lock();
+                try {
+                    detachFromUser(user, sessionId);
+                } finally {
+                    userLock.unlock();
                 }
             }
+        } finally {
+            sessionLock.unlock();
         }
     }
 
+    // Caller must hold the user's stripe.
+    private void detachFromUser(int user, String sessionId) {
+        UserState userState = users.get(user);
+        if (userState != null) {
+            userState.sessionIds.remove(sessionId);
+            if (userState.sessionIds.isEmpty()) {
+                users.set(user, null);
+                onlineBits.getAndUpdate(bits -> bits & ~(1L << user));
+            }
+        }
+    }
+
+    // Caller must hold the user's stripe.
+    private UserState userFor(int user) {
+        UserState existing = users.get(user);
+        if (existing != null) {
+            return existing;
+        }
+        UserState created = new UserState(EmojiCodec.animalAt(user), AppConstants.DEFAULT_SEND_ME);
+        users.set(user, created);
+        onlineBits.getAndUpdate(bits -> bits | 1L << user);
+        return created;
+    }
+
+    /**
+     * Online users in catalog order. Each distinct set of online users maps to one immutable list, built the
+     * first time that set is seen, so reading presence is a bitset load and an array lookup.
+     */
     public List<String> onlineUsers() {
-        List<String> result = new ArrayList<>();
-        for (String emoji : AppConstants.ANIMAL_EMOJIS) {
-            if (users.containsKey(emoji)) {
-                result.add(emoji);
+        int bits = (int) onlineBits.get();
+        List<String> list = onlineLists.get(bits);
+        if (list == null) {
+            List<String> online = new ArrayList<>(Integer.bitCount(bits));
+            for (int user = 0; user < EmojiCodec.ANIMALS; user++) {
+                if ((bits & 1 << user) != 0) {
+                    online.add(EmojiCodec.animalAt(user));
+                }
+            }
+            list = List.copyOf(online);
+            if (!onlineLists.compareAndSet(bits, null, list)) {
+                list = onlineLists.get(bits);
             }
         }
-        return result;
+        return list;
     }
 
     public List<String> sessionsForUser(String userEmoji) {
-        UserState state = users.get(userEmoji);
+        UserState state = findUser(userEmoji).orElse(null);
         if (state == null) {
             return List.of();
         }
         return List.copyOf(state.sessionIds);
     }
 
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    public int userCount() {
+        return Long.bitCount(onlineBits.get());
+    }
+
     public Collection<UserState> userStates() {
-        return List.copyOf(users.values());
+        List<UserState> states = new ArrayList<>(EmojiCodec.ANIMALS);
+        for (int user = 0; user < EmojiCodec.ANIMALS; user++) {
+            UserState state = users.get(user);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+        return states;
     }
 
     public Collection<SessionState> sessionStates() {
         return List.copyOf(sessions.values());
     }
 
-    public void appendMessage(ChatMessage message) {
-        historyLock.writeLock().lock();
-        try {
-            history.addLast(message);
-            while (history.size() > HISTORY_LIMIT) {
-                history.removeFirst();
-            }
-        } finally {
-            historyLock.writeLock().unlock();
-        }
+    public long appendMessage(EncodedChatMessage message) {
+        return history.append(message);
     }
 
-    public List<ChatMessage> recentMessagesFor(String userEmoji, String sessionId, int limit) {
-        historyLock.readLock().lock();
-        try {
-            List<ChatMessage> result = new ArrayList<>();
-            Iterator<ChatMessage> descending = history.descendingIterator();
-            while (descending.hasNext() && result.size() < limit) {
-                ChatMessage message = descending.next();
-                if (isRelevant(message, userEmoji, sessionId)) {
-                    result.add(message);
-                }
-            }
-            Collections.reverse(result);
-            return result;
-        } finally {
-            historyLock.readLock().unlock();
-        }
+    public List<EncodedChatMessage> recentMessagesFor(String userEmoji, String sessionId, int limit) {
+        return history.recentFor(userEmoji, sessionId, limit);
     }
 
-    private boolean isRelevant(ChatMessage message, String userEmoji, String sessionId) {
-        if (message.audience() == MessageAudience.EVERYONE) {
-            return true;
-        }
-        if (message.audience() == MessageAudience.USER) {
-            if (userEmoji == null) {
-                return false;
-            }
-            if (Objects.equals(message.targetUser(), userEmoji)) {
-                return true;
-            }
-            return Objects.equals(message.sender(), userEmoji);
-        }
-        if (message.audience() == MessageAudience.DEVICE) {
-            return Objects.equals(message.targetSession(), sessionId);
-        }
-        return false;
+    public long nextMessageSequence() {
+        return history.nextSequence();
+    }
+
+    public Optional<List<EncodedChatMessage>> messagesSince(String userEmoji, long afterSequence, int limit) {
+        return history.since(userEmoji, afterSequence, limit);
+    }
+
+    /**
+     * Opaque token that changes whenever SEND ME or SEND US changes, and never matches a token issued by
+     * another process.
+     */
+    public String stateVersion() {
+        return epoch + "." + settingsVersion.get();
+    }
+
+    public boolean isCurrentEpoch(String stateVersion) {
+        return stateVersion != null && stateVersion.startsWith(epoch + ".");
+    }
+
+    public long lastMessageSequence() {
+        return history.lastSequence();
+    }
+
+    public int historySize() {
+        return history.size();
+    }
+
+    public long evictedConnectedWindows() {
+        return history.evictedConnectedWindows();
     }
 
-    private void validateAnimal(String emoji) {
-        if (emoji == null || !AppConstants.ANIMAL_EMOJIS.contains(emoji)) {
+    private static int animalOrdinal(String emoji) {
+        int ordinal = EmojiCodec.animal(emoji);
+        if (ordinal < 0) {
             throw new IllegalArgumentException("Unknown animal emoji: " + emoji);
         }
+        return ordinal;
     }
 
-    private void validateFood(String emoji) {
-        if (emoji == null || !AppConstants.FOOD_EMOJIS.contains(emoji)) {
+    /**
+     * The table's own instance of a food emoji, so stored values can be compared by identity.
+     */
+    private static String canonicalFood(String emoji) {
+        int ordinal = EmojiCodec.food(emoji);
+        if (ordinal < 0) {
             throw new IllegalArgumentException("Unknown food emoji: " + emoji);
         }
+        return EmojiCodec.foodAt(ordinal);
     }
 
     public static final class SessionState {
@@ -0,0 +1,6 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+
+record SequencedMessage(long sequence, EncodedChatMessage message) {
+}
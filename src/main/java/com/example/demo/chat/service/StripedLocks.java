@@ -0,0 +1,54 @@
+package com.example.demo.chat.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks selected by key hash. Two keys on different stripes never contend; callers
+ * that need two stripes of the same family must go through {@link #lock(Object, Object)} so the
+ * stripes are always taken in index order.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLocks(int minimumStripes) {
+        int size = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock stripe(Object key) {
+        return stripes[indexOf(key)];
+    }
+
+    void lock(Object first, Object second) {
+        int a = first == null ? -1 : indexOf(first);
+        int b = second == null ? -1 : indexOf(second);
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        if (low >= 0 && low != high) {
+            stripes[low].lock();
+        }
+        stripes[high].lock();
+    }
+
+    void unlock(Object first, Object second) {
+        int a = first == null ? -1 : indexOf(first);
+        int b = second == null ? -1 : indexOf(second);
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        stripes[high].unlock();
+        if (low >= 0 && low != high) {
+            stripes[low].unlock();
+        }
+    }
+
+    private int indexOf(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.demo.chat.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Hashed wheel of periodic timers sharing one period. Each key is given a random phase (bucket) when it
+ * is added and fires once per revolution, so a large population is spread evenly across the period
+ * instead of firing in a single burst.
+ */
+final class TimerWheel<K> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<Set<K>> buckets;
+    private final Map<K, Integer> phases = new ConcurrentHashMap<>();
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    // Only read and written by the thread that holds advancing.
+    private long cursor;
+
+    TimerWheel(long periodMillis, long tickMillis, long startMillis) {
+        if (periodMillis <= 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException("Period and tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        int size = (int) Math.max(1, (periodMillis + tickMillis - 1) / tickMillis);
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    void add(K key) {
+        phases.computeIfAbsent(key, k -> {
+            int phase = ThreadLocalRandom.current().nextInt(buckets.size());
+            buckets.get(phase).add(k);
+            return phase;
+        });
+    }
+
+    void remove(K key) {
+        phases.computeIfPresent(key, (k, phase) -> {
+            buckets.get(phase).remove(k);
+            return null;
+        });
+    }
+
+    boolean contains(K key) {
+        return phases.containsKey(key);
+    }
+
+    int size() {
+        return phases.size();
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * Fires every bucket whose tick has elapsed since the previous call. A caller that falls behind by
+     * more than one revolution catches up at most once per key. A call made while another is still running,
+     * from another thread or from the action itself, fires nothing and returns 0; the next call catches up.
+     */
+    int advance(long nowMillis, Consumer<K> action) {
+        if (nowMillis < startMillis || !advancing.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            long target = (nowMillis - startMillis) / tickMillis;
+            int size = buckets.size();
+            if (target - cursor >= size) {
+                cursor = target - size + 1;
+            }
+            int fired = 0;
+            while (cursor <= target) {
+                for (K key : buckets.get((int) (cursor % size))) {
+                    action.accept(key);
+                    fired++;
+                }
+                cursor++;
+            }
+            return fired;
+        } finally {
+            advancing.set(false);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageAudience;
+import com.example.demo.chat.model.MessageSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+
+/**
+ * Binary form of a {@link ChatMessage} inside a log record. Enums are stored by ordinal, so new constants
+ * may only be appended. Records start with a format byte, so the layout can change without breaking old logs.
+ */
+final class ChatMessageCodec {
+
+    private static final int FORMAT = 1;
+
+    private static final MessageAudience[] AUDIENCES = MessageAudience.values();
+    private static final MessageSource[] SOURCES = MessageSource.values();
+
+    private ChatMessageCodec() {
+    }
+
+    static byte[] encode(ChatMessage message) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(message.id());
+            out.writeLong(message.timestamp().getEpochSecond());
+            out.writeInt(message.timestamp().getNano());
+            out.writeUTF(message.sender());
+            out.writeByte(message.audience().ordinal());
+            out.writeByte(message.source().ordinal());
+            out.writeUTF(message.content());
+            writeNullable(out, message.targetUser());
+            writeNullable(out, message.targetSession());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ChatMessage decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            int format = in.readUnsignedByte();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unknown record format " + format);
+            }
+            return new ChatMessage(
+                    in.readLong(),
+                    Instant.ofEpochSecond(in.readLong(), in.readInt()),
+                    in.readUTF(),
+                    AUDIENCES[in.readByte()],
+                    SOURCES[in.readByte()],
+                    in.readUTF(),
+                    readNullable(in),
+                    readNullable(in)
+            );
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.demo.chat.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size, memory-mapped log file. Records are laid out back to back as
+ * {@code [int length][int crc][long sequence][long timestampMillis][payload]}; a zero length marks the
+ * end of written data. A sparse index of every {@value #INDEX_INTERVAL}th record by sequence and
+ * timestamp lets reads start close to where they are needed.
+ */
+final class LogSegment {
+
+    static final int HEADER_BYTES = 24;
+    private static final int INDEX_INTERVAL = 64;
+    private static final int PAGE_BYTES = 4096;
+    private static final String SUFFIX = ".log";
+
+    private final Path path;
+    private final long baseSequence;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int records;
+    private long lastSequence = -1;
+    private long firstTimestamp = Long.MIN_VALUE;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long[] indexSequences = new long[16];
+    private long[] indexTimestamps = new long[16];
+    private int[] indexPositions = new int[16];
+    private int indexSize;
+
+    private LogSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static LogSegment create(Path directory, long baseSequence, int size) {
+        return open(directory.resolve("%020d%s".formatted(baseSequence, SUFFIX)), size);
+    }
+
+    /**
+     * Maps an existing or new segment and recovers its write position: the scan stops at the first record
+     * that is torn, fails its checksum or breaks sequence order, and everything after it is zeroed.
+     */
+    static LogSegment open(Path path, int size) {
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int mappedSize = (int) Math.max(size, channel.size());
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+            LogSegment segment = new LogSegment(path, baseSequenceOf(path), channel, buffer);
+            segment.recover();
+            return segment;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open log segment " + path, ex);
+        }
+    }
+
+    static boolean isSegment(Path path) {
+        return path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    private static long baseSequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Copies a record into the mapping. Returns {@code false} when it does not fit, leaving the segment
+     * untouched so the caller can roll to a new one.
+     */
+    boolean append(long sequence, long timestampMillis, byte[] payload) {
+        int end = writePosition + HEADER_BYTES + payload.length;
+        if (end > buffer.capacity()) {
+            return false;
+        }
+        int position = writePosition;
+        buffer.putInt(position + 4, checksum(sequence, timestampMillis, payload));
+        buffer.putLong(position + 8, sequence);
+        buffer.putLong(position + 16, timestampMillis);
+        buffer.put(position + HEADER_BYTES, payload);
+        // length goes last so a reader (or recovery) never sees a header for unwritten bytes
+        buffer.putInt(position, payload.length);
+        indexed(sequence, timestampMillis, position);
+        writePosition = end;
+        return true;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Visits records with {@code sequence >= fromSequence} in order until the visitor returns {@code false}.
+     */
+    boolean forEachFrom(long fromSequence, RecordVisitor visitor) {
+        int slot = floorSlot(indexSequences, fromSequence);
+        return scan(slot < 0 ? 0 : indexPositions[slot], record -> record.sequence() < fromSequence || visitor.visit(record));
+    }
+
+    /**
+     * Visits records with {@code timestamp >= fromMillis}. The index assumes timestamps grow with
+     * sequence; records written after a clock step back are still visited once the scan reaches them.
+     */
+    boolean forEachSince(long fromMillis, RecordVisitor visitor) {
+        int slot = floorSlot(indexTimestamps, fromMillis);
+        return scan(slot < 0 ? 0 : indexPositions[slot], record -> record.timestampMillis() < fromMillis || visitor.visit(record));
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    long lastSequence() {
+        return lastSequence;
+    }
+
+    long firstTimestamp() {
+        return firstTimestamp;
+    }
+
+    long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    int records() {
+        return records;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Closes and removes the file. The mapping itself is released when the buffer is collected.
+     */
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to delete log segment " + path, ex);
+        }
+    }
+
+    private void recover() {
+        int position = 0;
+        long previous = -1;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            long sequence = buffer.getLong(position + 8);
+            long timestamp = buffer.getLong(position + 16);
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_BYTES, payload);
+            if (sequence <= previous || buffer.getInt(position + 4) != checksum(sequence, timestamp, payload)) {
+                break;
+            }
+            indexed(sequence, timestamp, position);
+            previous = sequence;
+            position += HEADER_BYTES + length;
+        }
+        writePosition = position;
+        // Writes are sequential, so leftovers of a torn write end at the first page that is still blank;
+        // clearing only up to there avoids touching (and allocating) the unused tail of a sparse file.
+        byte[] page = new byte[PAGE_BYTES];
+        byte[] zeros = new byte[PAGE_BYTES];
+        int offset = position;
+        while (offset < buffer.capacity()) {
+            int length = Math.min(PAGE_BYTES - offset % PAGE_BYTES, buffer.capacity() - offset);
+            buffer.get(offset, page, 0, length);
+            if (Arrays.equals(page, 0, length, zeros, 0, length) && offset % PAGE_BYTES == 0) {
+                break;
+            }
+            buffer.put(offset, zeros, 0, length);
+            offset += length;
+        }
+    }
+
+    private void indexed(long sequence, long timestamp, int position) {
+        if (records % INDEX_INTERVAL == 0) {
+            if (indexSize == indexSequences.length) {
+                indexSequences = Arrays.copyOf(indexSequences, indexSize * 2);
+                indexTimestamps = Arrays.copyOf(indexTimestamps, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexSequences[indexSize] = sequence;
+            indexTimestamps[indexSize] = timestamp;
+            indexPositions[indexSize] = position;
+            indexSize++;
+        }
+        if (records == 0) {
+            firstTimestamp = timestamp;
+        }
+        records++;
+        lastSequence = sequence;
+        lastTimestamp = timestamp;
+    }
+
+    private int floorSlot(long[] keys, long key) {
+        int low = 0;
+        int high = indexSize - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private boolean scan(int from, RecordVisitor visitor) {
+        int position = from;
+        while (position < writePosition) {
+            int length = buffer.getInt(position);
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER_BYTES, payload);
+            if (!visitor.visit(new LogRecord(buffer.getLong(position + 8), buffer.getLong(position + 16), payload))) {
+                return false;
+            }
+            position += HEADER_BYTES + length;
+        }
+        return true;
+    }
+
+    private static int checksum(long sequence, long timestamp, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(16).putLong(sequence).putLong(timestamp).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    record LogRecord(long sequence, long timestampMillis, byte[] payload) {
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        boolean visit(LogRecord record);
+    }
+}
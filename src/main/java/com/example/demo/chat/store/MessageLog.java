@@ -0,0 +1,200 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.service.MessageJournal.EntryConsumer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Segmented append-only log of {@link ChatMessage} records. The newest segment takes appends until a
+ * record no longer fits; it is then forced and a new segment named after the next sequence is started.
+ * Rolling also applies retention, dropping the oldest segments beyond {@code maxSegments} or older than
+ * {@code retention}. Appends only copy into the mapping; durability comes from {@link #flush()}.
+ */
+final class MessageLog implements AutoCloseable {
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Duration retention;
+    private final Clock clock;
+    private final Deque<LogSegment> segments = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    MessageLog(Path directory, int segmentBytes, int maxSegments, Duration retention, Clock clock) {
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("At least one segment must be retained");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.retention = retention;
+        this.clock = clock;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(LogSegment::isSegment).sorted().forEach(path -> segments.addLast(LogSegment.open(path, segmentBytes)));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open message log in " + directory, ex);
+        }
+    }
+
+    void append(long sequence, ChatMessage message) {
+        byte[] payload = ChatMessageCodec.encode(message);
+        if (LogSegment.HEADER_BYTES + payload.length > segmentBytes) {
+            throw new IllegalArgumentException("Message " + message.id() + " is larger than a log segment");
+        }
+        lock.lock();
+        try {
+            LogSegment active = segments.peekLast();
+            if (active != null && sequence <= active.lastSequence()) {
+                throw new IllegalArgumentException("Sequence " + sequence + " is not after " + active.lastSequence());
+            }
+            long timestamp = message.timestamp().toEpochMilli();
+            if (active == null || !active.append(sequence, timestamp, payload)) {
+                if (active != null) {
+                    active.force();
+                }
+                LogSegment rolled = LogSegment.create(directory, sequence, segmentBytes);
+                segments.addLast(rolled);
+                applyRetention();
+                rolled.append(sequence, timestamp, payload);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces appended records to storage. One call covers every append since the previous one.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            LogSegment active = segments.peekLast();
+            if (active != null) {
+                active.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long lastSequence() {
+        lock.lock();
+        try {
+            for (Iterator<LogSegment> it = segments.descendingIterator(); it.hasNext(); ) {
+                long last = it.next().lastSequence();
+                if (last >= 0) {
+                    return last;
+                }
+            }
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void readFrom(long fromSequence, EntryConsumer consumer) {
+        lock.lock();
+        try {
+            for (LogSegment segment : segments) {
+                if (segment.lastSequence() >= fromSequence
+                        && !segment.forEachFrom(fromSequence, record -> deliver(record, consumer))) {
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void readSince(long fromMillis, EntryConsumer consumer) {
+        lock.lock();
+        try {
+            for (LogSegment segment : segments) {
+                if (segment.records() > 0 && segment.lastTimestamp() >= fromMillis
+                        && !segment.forEachSince(fromMillis, record -> deliver(record, consumer))) {
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Newest {@code limit} records, oldest first.
+     */
+    void readLatest(int limit, EntryConsumer consumer) {
+        lock.lock();
+        try {
+            List<LogSegment> needed = new ArrayList<>();
+            int remaining = limit;
+            for (Iterator<LogSegment> it = segments.descendingIterator(); it.hasNext() && remaining > 0; ) {
+                LogSegment segment = it.next();
+                needed.add(0, segment);
+                remaining -= segment.records();
+            }
+            int skip = Math.max(0, -remaining);
+            int[] seen = {0};
+            for (LogSegment segment : needed) {
+                segment.forEachFrom(Long.MIN_VALUE, record -> seen[0]++ < skip || deliver(record, consumer));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int segmentCount() {
+        lock.lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            for (LogSegment segment : segments) {
+                segment.force();
+                segment.close();
+            }
+            segments.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void applyRetention() {
+        long cutoff = retention.isZero() ? Long.MIN_VALUE : clock.millis() - retention.toMillis();
+        while (segments.size() > 1) {
+            LogSegment oldest = segments.peekFirst();
+            if (segments.size() <= maxSegments && oldest.lastTimestamp() >= cutoff) {
+                break;
+            }
+            segments.removeFirst().delete();
+        }
+    }
+
+    private static boolean deliver(LogSegment.LogRecord record, EntryConsumer consumer) {
+        consumer.accept(record.sequence(), ChatMessageCodec.decode(record.payload()));
+        return true;
+    }
+}
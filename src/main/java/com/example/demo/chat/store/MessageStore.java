@@ -0,0 +1,192 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.service.MessageJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Persists history to a {@link MessageLog} without touching the publish path. {@link #record} only
+ * queues the message; a single writer thread appends in sequence order and forces the log at most once
+ * per flush interval (group commit), so a burst of messages costs one sync. Publishers are only held
+ * back when the queue is full, i.e. when storage has fallen behind.
+ */
+public class MessageStore implements MessageJournal, SmartLifecycle, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStore.class);
+    private static final long GAP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MessageLog log;
+    private final int queueCapacity;
+    private final long flushIntervalNanos;
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public MessageStore(Path directory, int segmentBytes, int maxSegments, Duration retention,
+                        int queueCapacity, Duration flushInterval) {
+        this.log = new MessageLog(directory, segmentBytes, maxSegments, retention, Clock.systemUTC());
+        this.queueCapacity = queueCapacity;
+        this.flushIntervalNanos = flushInterval.toNanos();
+    }
+
+    @Override
+    public void record(long sequence, ChatMessage message) {
+        while (queued.incrementAndGet() > queueCapacity && running) {
+            queued.decrementAndGet();
+            LockSupport.parkNanos(flushIntervalNanos);
+        }
+        queue.offer(new Entry(sequence, message));
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public long lastSequence() {
+        return log.lastSequence();
+    }
+
+    @Override
+    public void replay(int limit, EntryConsumer consumer) {
+        log.readLatest(limit, consumer);
+    }
+
+    public void readFrom(long fromSequence, EntryConsumer consumer) {
+        log.readFrom(fromSequence, consumer);
+    }
+
+    public void readSince(long fromMillis, EntryConsumer consumer) {
+        log.readSince(fromMillis, consumer);
+    }
+
+    public long flushCount() {
+        return flushes.sum();
+    }
+
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    private void drain() {
+        // Sequences are assigned before entries are queued, so concurrent publishers can enqueue them out of
+        // order; hold later ones back until the gap fills (or clearly never will).
+        TreeMap<Long, ChatMessage> pending = new TreeMap<>();
+        long expected = log.lastSequence() + 1;
+        long gapSince = 0;
+        long lastFlush = System.nanoTime();
+        boolean dirty = false;
+        while (true) {
+            boolean stopping = !running;
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                queued.decrementAndGet();
+                if (entry.sequence() >= expected) {
+                    pending.put(entry.sequence(), entry.message());
+                }
+            }
+            if (!pending.isEmpty() && pending.firstKey() > expected) {
+                if (gapSince == 0) {
+                    gapSince = System.nanoTime();
+                } else if (stopping || System.nanoTime() - gapSince > GAP_TIMEOUT_NANOS) {
+                    logger.warn("Message log skipping sequences {}..{}", expected, pending.firstKey() - 1);
+                    expected = pending.firstKey();
+                }
+            }
+            while (!pending.isEmpty() && pending.firstKey() == expected) {
+                Map.Entry<Long, ChatMessage> next = pending.pollFirstEntry();
+                append(next.getKey(), next.getValue());
+                expected++;
+                gapSince = 0;
+                dirty = true;
+            }
+            long now = System.nanoTime();
+            if (dirty && (stopping || now - lastFlush >= flushIntervalNanos)) {
+                log.flush();
+                flushes.increment();
+                lastFlush = now;
+                dirty = false;
+            }
+            if (stopping && queue.isEmpty() && pending.isEmpty()) {
+                return;
+            }
+            LockSupport.parkNanos(dirty ? Math.max(0, flushIntervalNanos - (now - lastFlush)) : flushIntervalNanos);
+        }
+    }
+
+    private void append(long sequence, ChatMessage message) {
+        try {
+            log.append(sequence, message);
+            written.increment();
+        } catch (RuntimeException ex) {
+            logger.warn("Failed to persist message {}: {}", message.id(), ex.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::drain, "message-store");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the web server and message broker, so every recorded message is written.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        stop();
+        log.close();
+    }
+
+    private record Entry(long sequence, ChatMessage message) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one message channel. {@code stomp.channel.send} covers the send call itself, which for the
+ * synchronous broker channel is the whole broker dispatch. For executor-backed channels,
+ * {@code stomp.channel.queue.wait} is the time from the send to a worker picking the message up, carried
+ * in a header stamped on send, and {@code stomp.channel.handle} the time spent in the handler.
+ * <p>
+ * Sends and handlers nest on one thread, e.g. when a broker channel handler publishes to the broker
+ * channel again, so each thread keeps a stack of start times rather than a single slot.
+ */
+class ChannelMetricsInterceptor implements ExecutorChannelInterceptor {
+
+    static final String ENQUEUED_AT_HEADER = ChannelMetricsInterceptor.class.getName() + ".ENQUEUED_AT";
+
+    private final Timer sendTimer;
+    private final Timer queueWaitTimer;
+    private final Timer handleTimer;
+    private final ThreadLocal<StartTimes> sendStarts = ThreadLocal.withInitial(StartTimes::new);
+    private final ThreadLocal<StartTimes> handleStarts = ThreadLocal.withInitial(StartTimes::new);
+
+    ChannelMetricsInterceptor(String channel, MeterRegistry meterRegistry) {
+        this.sendTimer = timer("stomp.channel.send", channel, meterRegistry);
+        this.queueWaitTimer = timer("stomp.channel.queue.wait", channel, meterRegistry);
+        this.handleTimer = timer("stomp.channel.handle", channel, meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        long now = System.nanoTime();
+        sendStarts.get().push(now);
+        if (!(channel instanceof ExecutorSubscribableChannel executorChannel) || executorChannel.getExecutor() == null) {
+            return message;
+        }
+        // Inbound headers stay mutable up to the channel's ImmutableMessageChannelInterceptor; anything
+        // sealed earlier is copied.
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setHeader(ENQUEUED_AT_HEADER, now);
+        return accessor.getMessageHeaders() == message.getHeaders() ? message
+                : MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        sendTimer.record(System.nanoTime() - sendStarts.get().pop(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        long now = System.nanoTime();
+        if (message.getHeaders().get(ENQUEUED_AT_HEADER) instanceof Long enqueuedAt) {
+            queueWaitTimer.record(Math.max(0, now - enqueuedAt), TimeUnit.NANOSECONDS);
+        }
+        handleStarts.get().push(now);
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        handleTimer.record(System.nanoTime() - handleStarts.get().pop(), TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer timer(String name, String channel, MeterRegistry meterRegistry) {
+        return Timer.builder(name)
+                .tag("channel", channel)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static final class StartTimes {
+        private long[] starts = new long[4];
+        private int depth;
+
+        void push(long start) {
+            if (depth == starts.length) {
+                starts = Arrays.copyOf(starts, depth * 2);
+            }
+            starts[depth++] = start;
+        }
+
+        long pop() {
+            return starts[--depth];
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.cluster.ClusterBackplane;
+import com.example.demo.chat.cluster.LoopbackBackplane;
+import com.example.demo.chat.model.MessageIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Provides a single-node loopback backplane unless {@code app.cluster.backplane} names another one.
+ * Clustered deployments set it and register their own {@link ClusterBackplane} bean (e.g. over a
+ * message broker), and every node joins through it.
+ * Message ids carry the node number, so nodes must not share one.
+ */
+@Configuration
+class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cluster", name = "backplane", havingValue = "loopback", matchIfMissing = true)
+    ClusterBackplane clusterBackplane(@Value("${app.cluster.node-id:}") String nodeId) {
+        String id = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        return new LoopbackBackplane.Hub().node(id);
+    }
+
+    @Bean
+    MessageIds messageIds(@Value("${app.ids.node:-1}") int node, @Value("${app.cluster.node-id:}") String nodeId) {
+        if (node >= 0) {
+            return new MessageIds(node);
+        }
+        return new MessageIds(StringUtils.hasText(nodeId) ? MessageIds.nodeOf(nodeId) : 0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.config;
+
+import org.springframework.lang.Nullable;
+
+enum DestinationFamily {
+    MESSAGES("messages"),
+    ONLINE("online"),
+    USER("user"),
+    DEVICE("device"),
+    SETTINGS("settings"),
+    OTHER("other");
+
+    private final String tag;
+
+    DestinationFamily(String tag) {
+        this.tag = tag;
+    }
+
+    String tag() {
+        return tag;
+    }
+
+    static DestinationFamily of(@Nullable String destination) {
+        if (destination == null || !destination.startsWith("/topic/")) {
+            return OTHER;
+        }
+        if (destination.startsWith("/topic/device/")) {
+            return DEVICE;
+        }
+        if (destination.startsWith("/topic/user/")) {
+            return USER;
+        }
+        if (destination.equals("/topic/messages")) {
+            return MESSAGES;
+        }
+        if (destination.equals("/topic/online")) {
+            return ONLINE;
+        }
+        if (destination.startsWith("/topic/settings/")) {
+            return SETTINGS;
+        }
+        return OTHER;
+    }
+}
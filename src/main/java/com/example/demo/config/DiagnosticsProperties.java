@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * STOMP frame and handshake logging. Sample rates are keyed by destination prefix (longest prefix
+ * wins) and range from 0 (never) to 1 (always); handshakes are sampled by request path.
+ */
+@ConfigurationProperties("app.diagnostics")
+record DiagnosticsProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("0.1") double defaultSampleRate,
+        Map<String, Double> sampleRates,
+        @DefaultValue("4096") int queueCapacity,
+        @DefaultValue("60s") Duration summaryInterval
+) {
+
+    DiagnosticsProperties {
+        sampleRates = sampleRates == null ? Map.of() : Map.copyOf(sampleRates);
+    }
+}
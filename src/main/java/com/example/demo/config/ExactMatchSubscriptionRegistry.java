@@ -0,0 +1,142 @@
+package com.example.demo.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.broker.AbstractSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Subscription registry for the simple broker that resolves plain destinations with a single hash
+ * lookup. Subscriptions whose destination is an Ant-style pattern, or that carry a selector header,
+ * are handed to a {@link DefaultSubscriptionRegistry}, which is only consulted while some session
+ * still holds such a subscription.
+ */
+class ExactMatchSubscriptionRegistry extends AbstractSubscriptionRegistry {
+
+    private static final String SELECTOR_HEADER = "selector";
+    private static final MultiValueMap<String, String> NO_SUBSCRIBERS =
+            CollectionUtils.unmodifiableMultiValueMap(new LinkedMultiValueMap<>(0));
+
+    // destination -> (sessionId -> subscriptionIds); values are immutable and replaced on every change
+    private final Map<String, MultiValueMap<String, String>> exact = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> destination), for unsubscribe and disconnect. Both maps are only
+    // changed inside a compute on the session's entry here, so a session's index always matches exact.
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final DefaultSubscriptionRegistry fallback = new DefaultSubscriptionRegistry();
+    private final Set<String> fallbackSessions = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected void addSubscriptionInternal(String sessionId, String subscriptionId, String destination, Message<?> message) {
+        if (isPattern(destination) || hasSelector(message)) {
+            fallbackSessions.add(sessionId);
+            fallback.registerSubscription(message);
+            return;
+        }
+        sessions.compute(sessionId, (id, subscriptions) -> {
+            Map<String, String> target = subscriptions != null ? subscriptions : new HashMap<>(4);
+            if (target.putIfAbsent(subscriptionId, destination) != null) {
+                // A reused id keeps its first destination, as in DefaultSubscriptionRegistry.
+                return target;
+            }
+            exact.compute(destination, (key, subscribers) -> {
+                LinkedMultiValueMap<String, String> copy = copyOf(subscribers);
+                copy.add(sessionId, subscriptionId);
+                return CollectionUtils.unmodifiableMultiValueMap(copy);
+            });
+            return target;
+        });
+    }
+
+    @Override
+    protected void removeSubscriptionInternal(String sessionId, String subscriptionId, Message<?> message) {
+        sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+            String destination = subscriptions.remove(subscriptionId);
+            if (destination != null) {
+                removeExact(destination, sessionId, subscriptionId);
+            }
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+        if (fallbackSessions.contains(sessionId)) {
+            // a no-op unless the id belongs to a pattern or selector subscription
+            fallback.unregisterSubscription(message);
+        }
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+            subscriptions.forEach((subscriptionId, destination) -> removeExact(destination, sessionId, subscriptionId));
+            return null;
+        });
+        if (fallbackSessions.remove(sessionId)) {
+            fallback.unregisterAllSubscriptions(sessionId);
+        }
+    }
+
+    @Override
+    protected MultiValueMap<String, String> findSubscriptionsInternal(String destination, Message<?> message) {
+        MultiValueMap<String, String> exactMatches = exact.getOrDefault(destination, NO_SUBSCRIBERS);
+        if (fallbackSessions.isEmpty()) {
+            return exactMatches;
+        }
+        MultiValueMap<String, String> patternMatches = fallback.findSubscriptions(message);
+        if (patternMatches.isEmpty()) {
+            return exactMatches;
+        }
+        MultiValueMap<String, String> merged = new LinkedMultiValueMap<>();
+        patternMatches.forEach(merged::addAll);
+        exactMatches.forEach(merged::addAll);
+        return merged;
+    }
+
+    // Caller is inside the compute for the session's entry.
+    private void removeExact(String destination, String sessionId, String subscriptionId) {
+        exact.computeIfPresent(destination, (key, subscribers) -> {
+            LinkedMultiValueMap<String, String> copy = copyOf(subscribers);
+            List<String> ids = copy.get(sessionId);
+            if (ids != null) {
+                ids.remove(subscriptionId);
+                if (ids.isEmpty()) {
+                    copy.remove(sessionId);
+                }
+            }
+            return copy.isEmpty() ? null : CollectionUtils.unmodifiableMultiValueMap(copy);
+        });
+    }
+
+    /**
+     * Copy-on-write like the destination cache of {@link DefaultSubscriptionRegistry}: a subscription change
+     * costs a copy of the destination's subscribers, and a broadcast gets a snapshot without copying anything.
+     */
+    private static LinkedMultiValueMap<String, String> copyOf(MultiValueMap<String, String> subscribers) {
+        LinkedMultiValueMap<String, String> copy = new LinkedMultiValueMap<>(subscribers != null ? subscribers.size() + 1 : 1);
+        if (subscribers != null) {
+            subscribers.forEach((sessionId, ids) -> copy.put(sessionId, new ArrayList<>(ids)));
+        }
+        return copy;
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private static boolean hasSelector(Message<?> message) {
+        return NativeMessageHeaderAccessor.getFirstNativeHeader(SELECTOR_HEADER, message.getHeaders()) != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ExactMatchSubscriptionRegistry[destinations=" + exact.size() + ", sessions=" + sessions.size()
+                + ", patternSessions=" + fallbackSessions.size() + "]";
+    }
+}
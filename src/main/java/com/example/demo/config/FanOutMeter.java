@@ -0,0 +1,29 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.lang.Nullable;
+
+/**
+ * The {@code stomp.broker.fanout} summaries, one per destination family. Record once per publication: the
+ * count is the publish count, the total the delivery count.
+ */
+class FanOutMeter {
+
+    private final DistributionSummary[] fanOut = new DistributionSummary[DestinationFamily.values().length];
+
+    FanOutMeter(MeterRegistry meterRegistry) {
+        for (DestinationFamily family : DestinationFamily.values()) {
+            fanOut[family.ordinal()] = DistributionSummary.builder("stomp.broker.fanout")
+                    .description("Sessions resolved per broker publish")
+                    .baseUnit("sessions")
+                    .tag("family", family.tag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+
+    void record(@Nullable String destination, int sessions) {
+        fanOut[DestinationFamily.of(destination).ordinal()].record(sessions);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves diagnostic logging off the channel threads. Callers ask {@link #sample(String)} first and
+ * only build an {@link Event} when it returns {@code true}; events are queued without locking and
+ * written by a single background thread, which also logs a periodic summary of what was sampled
+ * out or dropped because the queue was full. The writer sleeps until an event arrives or the next
+ * summary is due. When disabled nothing is sampled and no thread is started.
+ */
+@Component
+class FrameDiagnostics implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameDiagnostics.class);
+
+    private final boolean enabled;
+    private final double defaultSampleRate;
+    private final String[] prefixes;
+    private final double[] prefixRates;
+    private final int queueCapacity;
+    private final long summaryIntervalNanos;
+
+    private final Queue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    // Set while the writer is about to park or parked, so submit only unparks a sleeping writer.
+    private final AtomicBoolean idle = new AtomicBoolean();
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    FrameDiagnostics(DiagnosticsProperties properties) {
+        this.enabled = properties.enabled();
+        this.defaultSampleRate = properties.defaultSampleRate();
+        List<Map.Entry<String, Double>> rates = properties.sampleRates().entrySet().stream()
+                .sorted(Comparator.comparingInt((Map.Entry<String, Double> entry) -> entry.getKey().length()).reversed())
+                .toList();
+        this.prefixes = new String[rates.size()];
+        this.prefixRates = new double[rates.size()];
+        for (int i = 0; i < rates.size(); i++) {
+            prefixes[i] = rates.get(i).getKey();
+            prefixRates[i] = rates.get(i).getValue();
+        }
+        this.queueCapacity = properties.queueCapacity();
+        this.summaryIntervalNanos = properties.summaryInterval().toNanos();
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    boolean sample(@Nullable String destination) {
+        if (!enabled) {
+            return false;
+        }
+        double rate = rateFor(destination);
+        if (rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate)) {
+            sampled.increment();
+            return true;
+        }
+        sampledOut.increment();
+        return false;
+    }
+
+    void submit(Event event) {
+        if (!enabled) {
+            return;
+        }
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        queue.offer(event);
+        if (idle.get() && idle.compareAndSet(true, false)) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // Counts since the last summary, which resets them.
+    long sampledCount() {
+        return sampled.sum();
+    }
+
+    long sampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    private double rateFor(@Nullable String destination) {
+        if (destination != null) {
+            for (int i = 0; i < prefixes.length; i++) {
+                if (destination.startsWith(prefixes[i])) {
+                    return prefixRates[i];
+                }
+            }
+        }
+        return defaultSampleRate;
+    }
+
+    private void drain() {
+        long nextSummary = System.nanoTime() + summaryIntervalNanos;
+        while (running) {
+            if (!writeNext()) {
+                idle.set(true);
+                // Re-checked after announcing the park, so an event offered meanwhile is not left waiting.
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, nextSummary - System.nanoTime());
+                }
+                idle.set(false);
+            }
+            if (System.nanoTime() - nextSummary >= 0) {
+                logSummary();
+                nextSummary = System.nanoTime() + summaryIntervalNanos;
+            }
+        }
+        while (writeNext()) {
+            // flush what was queued before shutdown
+        }
+        logSummary();
+    }
+
+    private boolean writeNext() {
+        Event event = queue.poll();
+        if (event == null) {
+            return false;
+        }
+        queued.decrementAndGet();
+        try {
+            event.write();
+        } catch (RuntimeException ex) {
+            logger.warn("Diagnostic event failed to write: {}", ex.getMessage());
+        }
+        written.increment();
+        return true;
+    }
+
+    private void logSummary() {
+        long sampledCount = sampled.sumThenReset();
+        long sampledOutCount = sampledOut.sumThenReset();
+        long droppedCount = dropped.sumThenReset();
+        long writtenCount = written.sumThenReset();
+        if (sampledCount + sampledOutCount + droppedCount > 0) {
+            logger.info("STOMP diagnostics summary sampled={} sampledOut={} dropped={} written={} queued={}",
+                    sampledCount, sampledOutCount, droppedCount, writtenCount, queued.get());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::drain, "stomp-diagnostics");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @FunctionalInterface
+    interface Event {
+        void write();
+    }
+}
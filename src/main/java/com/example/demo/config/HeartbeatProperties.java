@@ -0,0 +1,24 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * STOMP heartbeats the broker offers in CONNECTED: it sends one every {@code outgoing} and asks the client
+ * for one every {@code incoming}. A client that negotiates incoming heartbeats and then misses three in a
+ * row is disconnected by the broker; {@code idleTimeout} catches the rest (see {@code IdleSessionReaper}).
+ * Zero disables either direction.
+ */
+@ConfigurationProperties("app.heartbeat")
+record HeartbeatProperties(
+        @DefaultValue("10s") Duration outgoing,
+        @DefaultValue("10s") Duration incoming,
+        @DefaultValue("2m") Duration idleTimeout
+) {
+
+    long[] toHeartbeatValue() {
+        return new long[]{outgoing.toMillis(), incoming.toMillis()};
+    }
+}
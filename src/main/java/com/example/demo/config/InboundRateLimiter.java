@@ -0,0 +1,133 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.EmojiCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Throttles client SEND frames on the inbound channel, before they reach a {@code @MessageMapping}
+ * handler. A frame over its session or user budget is dropped and counted in
+ * {@code stomp.inbound.throttled}; the offender is told at most once per second.
+ */
+class InboundRateLimiter implements ChannelInterceptor {
+
+    private static final long NOTICE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Integer> ruleIndex = new HashMap<>();
+    private final List<String> destinations = new ArrayList<>();
+    private final List<RateLimitProperties.Rule> rules = new ArrayList<>();
+    private final List<Counter> sessionThrottled = new ArrayList<>();
+    private final List<Counter> userThrottled = new ArrayList<>();
+    private final Map<String, Buckets> sessions = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Buckets> users = new AtomicReferenceArray<>(EmojiCodec.ANIMALS);
+    private final Function<String, String> userOfSession;
+    private final BiConsumer<String, String> notifyThrottled;
+
+    /**
+     * @param userOfSession   the user a session registered as, or {@code null}
+     * @param notifyThrottled called with the session id and destination of a dropped frame
+     */
+    InboundRateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry,
+                       Function<String, String> userOfSession, BiConsumer<String, String> notifyThrottled) {
+        this.userOfSession = userOfSession;
+        this.notifyThrottled = notifyThrottled;
+        properties.rules().forEach((destination, rule) -> {
+            ruleIndex.put(destination, rules.size());
+            destinations.add(destination);
+            rules.add(rule);
+            sessionThrottled.add(throttledCounter(destination, "session", meterRegistry));
+            userThrottled.add(throttledCounter(destination, "user", meterRegistry));
+        });
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        if (type == SimpMessageType.DISCONNECT) {
+            sessions.remove(sessionId);
+            return message;
+        }
+        Integer rule = type == SimpMessageType.MESSAGE
+                ? ruleIndex.get(SimpMessageHeaderAccessor.getDestination(message.getHeaders())) : null;
+        if (rule == null) {
+            return message;
+        }
+        long now = System.nanoTime();
+        Buckets session = sessions.computeIfAbsent(sessionId, id -> new Buckets(true, now));
+        if (!session.buckets[rule].tryAcquire(now)) {
+            return throttled(session, sessionId, rule, sessionThrottled, now);
+        }
+        int user = EmojiCodec.animal(userOfSession.apply(sessionId));
+        if (user >= 0 && !userBuckets(user, now).buckets[rule].tryAcquire(now)) {
+            // the frame is dropped, so it must not count against the session either
+            session.buckets[rule].refund();
+            return throttled(session, sessionId, rule, userThrottled, now);
+        }
+        return message;
+    }
+
+    private Buckets userBuckets(int user, long now) {
+        Buckets buckets = users.get(user);
+        if (buckets == null) {
+            buckets = new Buckets(false, now);
+            if (!users.compareAndSet(user, null, buckets)) {
+                buckets = users.get(user);
+            }
+        }
+        return buckets;
+    }
+
+    private Message<?> throttled(Buckets session, String sessionId, int rule, List<Counter> counters, long now) {
+        counters.get(rule).increment();
+        long last = session.lastNotice.get();
+        if (now - last >= NOTICE_INTERVAL_NANOS && session.lastNotice.compareAndSet(last, now)) {
+            notifyThrottled.accept(sessionId, destinations.get(rule));
+        }
+        return null;
+    }
+
+    private static Counter throttledCounter(String destination, String scope, MeterRegistry meterRegistry) {
+        return Counter.builder("stomp.inbound.throttled")
+                .description("Client frames dropped by the inbound rate limiter")
+                .tag("destination", destination)
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+
+    private final class Buckets {
+
+        final TokenBucket[] buckets;
+        final AtomicLong lastNotice;
+
+        Buckets(boolean perSession, long now) {
+            this.buckets = new TokenBucket[rules.size()];
+            for (int i = 0; i < buckets.length; i++) {
+                RateLimitProperties.Rule rule = rules.get(i);
+                buckets[i] = perSession
+                        ? new TokenBucket(rule.sessionRate(), rule.sessionBurst(), now)
+                        : new TokenBucket(rule.userRate(), rule.userBurst(), now);
+            }
+            this.lastNotice = new AtomicLong(now - NOTICE_INTERVAL_NANOS);
+        }
+    }
+}
@@ -4,21 +4,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 
+import java.util.List;
 import java.util.Map;
 
 class LoggingChannelInterceptor implements ChannelInterceptor {
 
     private static final Logger logger = LoggerFactory.getLogger(LoggingChannelInterceptor.class);
     private final String direction;
+    private final FrameDiagnostics diagnostics;
 
-    LoggingChannelInterceptor(String direction) {
+    LoggingChannelInterceptor(String direction, FrameDiagnostics diagnostics) {
         this.direction = direction;
+        this.diagnostics = diagnostics;
     }
 
     @Override
@@ -26,12 +28,14 @@ class LoggingChannelInterceptor implements ChannelInterceptor {
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
         if (accessor != null) {
             StompCommand command = accessor.getCommand();
-            if (command != null) {
+            String destination = accessor.getDestination();
+            if (command != null && diagnostics.sample(destination)) {
                 String sessionId = accessor.getSessionId();
-                String destination = accessor.getDestination();
-                Object nativeHeaders = message.getHeaders().get(SimpMessageHeaderAccessor.NATIVE_HEADERS);
-                logger.info("STOMP {} command={} session={} destination={} nativeHeaders={}",
-                        direction, command, sessionId, destination, nativeHeaders);
+                // Copied now: the frame's header lists may still change after this send returns.
+                Map<String, List<String>> nativeHeaders = accessor.toNativeHeaderMap();
+                nativeHeaders.replaceAll((name, values) -> List.copyOf(values));
+                diagnostics.submit(() -> logger.info("STOMP {} command={} session={} destination={} nativeHeaders={}",
+                        direction, command, sessionId, destination, nativeHeaders));
             }
         }
         return message;
@@ -39,11 +43,16 @@ class LoggingChannelInterceptor implements ChannelInterceptor {
 
     @Override
     public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (ex == null) {
+            return;
+        }
         StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
         if (accessor != null) {
             StompCommand command = accessor.getCommand();
-            if (command != null && ex != null) {
-                logger.warn("STOMP {} command={} session={} failed to send: {}", direction, accessor.getSessionId(), command, ex.getMessage(), ex);
+            if (command != null) {
+                String sessionId = accessor.getSessionId();
+                diagnostics.submit(() -> logger.warn("STOMP {} command={} session={} failed to send: {}",
+                        direction, command, sessionId, ex.getMessage(), ex));
             }
         }
     }
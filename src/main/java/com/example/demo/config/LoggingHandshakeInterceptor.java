@@ -2,6 +2,7 @@ package com.example.demo.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.lang.Nullable;
@@ -9,10 +10,11 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
 import java.net.InetSocketAddress;
+import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.http.server.ServletServerHttpRequest;
 
@@ -22,10 +24,20 @@ class LoggingHandshakeInterceptor implements HandshakeInterceptor {
     private static final String HANDSHAKE_ID_ATTR = LoggingHandshakeInterceptor.class.getName() + ".HANDSHAKE_ID";
     private static final String HANDSHAKE_START_ATTR = LoggingHandshakeInterceptor.class.getName() + ".HANDSHAKE_START";
 
+    private final AtomicLong handshakeIds = new AtomicLong();
+    private final FrameDiagnostics diagnostics;
+
+    LoggingHandshakeInterceptor(FrameDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
                                    WebSocketHandler wsHandler, Map<String, Object> attributes) {
-        String handshakeId = UUID.randomUUID().toString();
+        if (!diagnostics.sample(request.getURI().getPath())) {
+            return true;
+        }
+        String handshakeId = Long.toString(handshakeIds.incrementAndGet());
         Instant start = Instant.now();
         attributes.put(HANDSHAKE_ID_ATTR, handshakeId);
         attributes.put(HANDSHAKE_START_ATTR, start);
@@ -34,11 +46,13 @@ class LoggingHandshakeInterceptor implements HandshakeInterceptor {
             servletRequest.getServletRequest().setAttribute(HANDSHAKE_START_ATTR, start);
         }
         InetSocketAddress remoteAddress = request.getRemoteAddress();
-        logger.info("STOMP handshake started id={} remoteAddress={} uri={} headers={}",
+        URI uri = request.getURI();
+        HttpHeaders headers = request.getHeaders();
+        diagnostics.submit(() -> logger.info("STOMP handshake started id={} remoteAddress={} uri={} headers={}",
                 handshakeId,
                 remoteAddress,
-                request.getURI(),
-                request.getHeaders());
+                uri,
+                headers));
         return true;
     }
 
@@ -53,14 +67,20 @@ class LoggingHandshakeInterceptor implements HandshakeInterceptor {
             servletRequest.getServletRequest().removeAttribute(HANDSHAKE_ID_ATTR);
             servletRequest.getServletRequest().removeAttribute(HANDSHAKE_START_ATTR);
         }
+        if (handshakeId == null && exception == null) {
+            // Sampled out in beforeHandshake; failures are always reported.
+            return;
+        }
         Instant start = startAttr instanceof Instant instant ? instant : null;
         Duration duration = start != null ? Duration.between(start, Instant.now()) : null;
         InetSocketAddress remoteAddress = request.getRemoteAddress();
-        logger.info("STOMP handshake completed id={} uri={} remoteAddress={} durationMs={} exception={}",
-                handshakeId == null ? "unknown" : handshakeId,
-                request.getURI(),
+        URI uri = request.getURI();
+        Object loggedId = handshakeId == null ? "unknown" : handshakeId;
+        diagnostics.submit(() -> logger.info("STOMP handshake completed id={} uri={} remoteAddress={} durationMs={} exception={}",
+                loggedId,
+                uri,
                 remoteAddress,
                 duration == null ? "n/a" : duration.toMillis(),
-                exception == null ? "none" : exception.getMessage());
+                exception == null ? "none" : exception.getMessage()));
     }
 }
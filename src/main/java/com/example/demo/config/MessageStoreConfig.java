@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.store.MessageStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(MessageStoreProperties.class)
+class MessageStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "app.store", name = "enabled", havingValue = "true")
+    MessageStore messageStore(MessageStoreProperties properties) {
+        return new MessageStore(
+                properties.directory(),
+                Math.toIntExact(properties.segmentSize().toBytes()),
+                properties.maxSegments(),
+                properties.retention(),
+                properties.queueCapacity(),
+                properties.flushInterval()
+        );
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Durable message log. Segments are preallocated and memory-mapped at {@code segmentSize}; retention
+ * keeps at most {@code maxSegments} and drops segments whose newest record is older than
+ * {@code retention} (zero disables the age limit).
+ */
+@ConfigurationProperties("app.store")
+record MessageStoreProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/messages") Path directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("16") int maxSegments,
+        @DefaultValue("7d") Duration retention,
+        @DefaultValue("10ms") Duration flushInterval,
+        @DefaultValue("65536") int queueCapacity
+) {
+}
@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.util.MultiValueMap;
+
+/**
+ * Records, per destination family, how many broker publishes were resolved and how many sessions
+ * each one fanned out to. The summary's count is the publish count, its total the delivery count.
+ * Only for a single registry; sharded brokers record the sum over their shards themselves.
+ */
+class MeteredSubscriptionRegistry implements SubscriptionRegistry {
+
+    private final SubscriptionRegistry delegate;
+    private final FanOutMeter fanOut;
+
+    MeteredSubscriptionRegistry(SubscriptionRegistry delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.fanOut = new FanOutMeter(meterRegistry);
+    }
+
+    @Override
+    public void registerSubscription(Message<?> subscribeMessage) {
+        delegate.registerSubscription(subscribeMessage);
+    }
+
+    @Override
+    public void unregisterSubscription(Message<?> unsubscribeMessage) {
+        delegate.unregisterSubscription(unsubscribeMessage);
+    }
+
+    @Override
+    public void unregisterAllSubscriptions(String sessionId) {
+        delegate.unregisterAllSubscriptions(sessionId);
+    }
+
+    @Override
+    public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+        MultiValueMap<String, String> subscriptions = delegate.findSubscriptions(message);
+        fanOut.record(SimpMessageHeaderAccessor.getDestination(message.getHeaders()), subscriptions.size());
+        return subscriptions;
+    }
+
+    @Override
+    public String toString() {
+        return "Metered" + delegate;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ObserverProperties.class)
+class ObserverConfig {
+
+    @Bean
+    ObserverFeed observerFeed(ObserverProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                              ObjectProvider<ChatService> chatService) {
+        // Resolved lazily: the chat service depends on the broker channel this feed is installed on.
+        return new ObserverFeed(properties, objectMapper, meterRegistry, () -> chatService.getObject().presence());
+    }
+
+    @Bean
+    ServletRegistrationBean<ObserverServlet> observerServlet(ObserverFeed feed, ObserverProperties properties) {
+        ServletRegistrationBean<ObserverServlet> registration = new ServletRegistrationBean<>(new ObserverServlet(feed), properties.path());
+        registration.setAsyncSupported(true);
+        registration.setEnabled(properties.enabled());
+        return registration;
+    }
+}
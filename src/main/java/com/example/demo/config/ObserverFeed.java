@@ -0,0 +1,248 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fans broadcasts out to read-only Server-Sent Events watchers. It sits on the broker channel, so it sees
+ * every publication to {@code /topic/messages} and {@code /topic/online}, local or relayed from another
+ * node, with its JSON payload already encoded. Each publication is framed as an SSE event once and the
+ * same bytes are queued for every watcher; there is no per-watcher encoding, subscription registry entry
+ * or STOMP session.
+ * <p>
+ * Watchers write with servlet non-blocking I/O: a frame is written from the publishing thread while the
+ * socket accepts it, and otherwise waits in the watcher's queue until the container reports the socket
+ * writable again. See {@link ObserverProperties} for what happens when the queue is full.
+ */
+class ObserverFeed implements ChannelInterceptor, SmartLifecycle, MeterBinder {
+
+    static final String MESSAGES = "/topic/messages";
+    static final String ONLINE = "/topic/online";
+
+    private final int queueCapacity;
+    private final ObserverProperties.Overflow overflow;
+    private final byte[] retryFrame;
+    private final ObjectMapper objectMapper;
+    private final Supplier<OnlineUsersPayload> presence;
+    private final Set<Observer> observers = ConcurrentHashMap.newKeySet();
+    private final Counter dropped;
+    private final Counter evicted;
+    private volatile boolean running;
+
+    /**
+     * @param presence the presence list last published on {@code /topic/online}, sent to new watchers
+     */
+    ObserverFeed(ObserverProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                 Supplier<OnlineUsersPayload> presence) {
+        this.queueCapacity = properties.queueCapacity();
+        this.overflow = properties.overflow();
+        this.retryFrame = ("retry: " + properties.retry().toMillis() + "\n\n").getBytes(StandardCharsets.UTF_8);
+        this.objectMapper = objectMapper;
+        this.presence = presence;
+        this.dropped = Counter.builder("chat.observer.dropped")
+                .description("SSE frames not queued for watchers that were too far behind")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("chat.observer.evicted")
+                .description("SSE watchers disconnected for being too far behind")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.observer.watchers", observers, Set::size)
+                .description("Connected SSE watchers")
+                .register(registry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (observers.isEmpty() || SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (MESSAGES.equals(destination)) {
+            publish(event("message", json));
+        } else if (ONLINE.equals(destination)) {
+            publish(event("online", json));
+        }
+        return message;
+    }
+
+    void publish(byte[] frame) {
+        for (Observer observer : observers) {
+            observer.offer(frame);
+        }
+    }
+
+    /**
+     * A watcher writing to {@code out}; {@code onClose} ends its response. It receives nothing until it is
+     * {@link #subscribe subscribed}, which must happen after it has been set as the stream's write listener.
+     */
+    Observer observer(ServletOutputStream out, Runnable onClose) {
+        return new Observer(out, onClose);
+    }
+
+    void subscribe(Observer observer) throws JsonProcessingException {
+        if (!running) {
+            observer.close();
+            return;
+        }
+        // Subscribed before the presence list is read, so no delta published after it can be missed.
+        observers.add(observer);
+        observer.offer(retryFrame);
+        observer.offer(event("online", objectMapper.writeValueAsBytes(presence.get())));
+    }
+
+    int size() {
+        return observers.size();
+    }
+
+    /**
+     * One SSE event. Jackson never writes raw line breaks, so the JSON fits on a single {@code data:} line.
+     */
+    static byte[] event(String name, byte[] json) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(json.length + name.length() + 16);
+        frame.writeBytes(("event: " + name + "\ndata: ").getBytes(StandardCharsets.US_ASCII));
+        frame.writeBytes(json);
+        frame.write('\n');
+        frame.write('\n');
+        return frame.toByteArray();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Ends every stream before the web server's graceful shutdown, which would otherwise wait for them.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        observers.forEach(Observer::close);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    final class Observer implements WriteListener {
+
+        private final ServletOutputStream out;
+        private final Runnable onClose;
+        private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        // Work-in-progress counter: whoever raises it from zero writes, the rest only ask for another pass.
+        private final AtomicInteger drains = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean unflushed;
+
+        private Observer(ServletOutputStream out, Runnable onClose) {
+            this.out = out;
+            this.onClose = onClose;
+        }
+
+        void offer(byte[] frame) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.incrementAndGet() > queueCapacity) {
+                queued.decrementAndGet();
+                if (overflow == ObserverProperties.Overflow.DISCONNECT) {
+                    evicted.increment();
+                    close();
+                } else {
+                    dropped.increment();
+                }
+                return;
+            }
+            queue.offer(frame);
+            drain();
+        }
+
+        int queued() {
+            return queued.get();
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            close();
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                observers.remove(this);
+                queue.clear();
+                onClose.run();
+            }
+        }
+
+        private void drain() {
+            if (drains.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                try {
+                    write();
+                } catch (IOException | IllegalStateException ex) {
+                    close();
+                }
+                missed = drains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Writes while the socket accepts data. Once {@code isReady()} returns false the container calls
+         * {@link #onWritePossible()} when it may continue.
+         */
+        private void write() throws IOException {
+            while (!closed.get() && out.isReady()) {
+                byte[] frame = queue.poll();
+                if (frame == null) {
+                    if (!unflushed) {
+                        return;
+                    }
+                    unflushed = false;
+                    out.flush();
+                } else {
+                    queued.decrementAndGet();
+                    out.write(frame);
+                    unflushed = true;
+                }
+            }
+        }
+    }
+}
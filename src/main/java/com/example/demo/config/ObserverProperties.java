@@ -0,0 +1,32 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Read-only Server-Sent Events feed of {@code /topic/messages} and {@code /topic/online} at {@code path}.
+ * Each watcher may have up to {@code queueCapacity} frames waiting for its socket; {@code overflow} decides
+ * what happens to one that falls further behind. {@code retry} is the reconnect delay suggested to clients.
+ */
+@ConfigurationProperties("app.observer")
+record ObserverProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("/observe") String path,
+        @DefaultValue("256") int queueCapacity,
+        @DefaultValue("drop") Overflow overflow,
+        @DefaultValue("3s") Duration retry
+) {
+
+    enum Overflow {
+        /**
+         * Drop the frames that do not fit; the periodic full presence list resyncs the watcher.
+         */
+        DROP,
+        /**
+         * End the stream. EventSource clients reconnect and start again from the current presence list.
+         */
+        DISCONNECT
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.config;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Serves the {@link ObserverFeed} as an endless {@code text/event-stream} response.
+ */
+class ObserverServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ObserverFeed feed;
+
+    ObserverServlet(ObserverFeed feed) {
+        this.feed = feed;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        // Keeps nginx-style proxies from buffering the stream.
+        response.setHeader("X-Accel-Buffering", "no");
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        ServletOutputStream out = response.getOutputStream();
+        ObserverFeed.Observer observer = feed.observer(out, () -> complete(async));
+        async.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                observer.close();
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                observer.close();
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                observer.close();
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        out.setWriteListener(observer);
+        feed.subscribe(observer);
+    }
+
+    private static void complete(AsyncContext async) {
+        try {
+            async.complete();
+        } catch (IllegalStateException alreadyCompleting) {
+            // the container ended the response first, e.g. after the client went away
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Per-session outbound limits. {@code sendBufferSize} and {@code sendTimeLimit} are Spring's hard limits:
+ * a session that exceeds either is closed. A session whose current socket write has been stuck for
+ * longer than {@code slowAfter} is treated as a slow consumer and handled by {@code overflow} first.
+ */
+@ConfigurationProperties("app.outbound")
+record OutboundProperties(
+        @DefaultValue("512KB") DataSize sendBufferSize,
+        @DefaultValue("10s") Duration sendTimeLimit,
+        @DefaultValue("1s") Duration slowAfter,
+        @DefaultValue("drop") Overflow overflow
+) {
+
+    enum Overflow {
+        /**
+         * Drop scheduled SYSTEM_* messages to the session until it catches up.
+         */
+        DROP,
+        /**
+         * Close the session as soon as it would be sent anything while slow.
+         */
+        DISCONNECT
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.Map;
+
+/**
+ * Inbound SEND limits keyed by destination. Each rule has a bucket per session and one per user shared
+ * by all of that user's sessions; a frame must fit both.
+ */
+@ConfigurationProperties("app.rate-limit")
+record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        Map<String, Rule> rules
+) {
+
+    RateLimitProperties {
+        rules = rules == null ? Map.of() : Map.copyOf(rules);
+    }
+
+    record Rule(
+            @DefaultValue("5") double sessionRate,
+            @DefaultValue("10") int sessionBurst,
+            @DefaultValue("10") double userRate,
+            @DefaultValue("20") int userBurst
+    ) {
+    }
+}
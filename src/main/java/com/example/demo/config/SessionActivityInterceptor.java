@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.service.IdleSessionReaper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Reports every inbound frame, heartbeats included, to the {@link IdleSessionReaper} as activity of its
+ * session, and tells it to forget a session once its DISCONNECT comes through.
+ */
+class SessionActivityInterceptor implements ChannelInterceptor {
+
+    private final ObjectProvider<IdleSessionReaper> reaperProvider;
+    private volatile IdleSessionReaper reaper;
+
+    SessionActivityInterceptor(ObjectProvider<IdleSessionReaper> reaperProvider) {
+        this.reaperProvider = reaperProvider;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        IdleSessionReaper reaper = reaper();
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.DISCONNECT) {
+            reaper.forget(sessionId);
+        } else {
+            reaper.touch(sessionId);
+        }
+        return message;
+    }
+
+    private IdleSessionReaper reaper() {
+        IdleSessionReaper resolved = reaper;
+        if (resolved == null) {
+            resolved = reaperProvider.getObject();
+            reaper = resolved;
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.util.MultiValueMap;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Simple broker split into shards that each own a slice of the sessions. A session is assigned to a shard
+ * by its id, and everything about it (CONNECT, SUBSCRIBE, UNSUBSCRIBE, DISCONNECT and heartbeats) is
+ * handled there, so each shard keeps its own subscription registry and heartbeat bookkeeping. A publication
+ * is queued to every shard, and each shard fans it out to its own subscribers on its own thread, so the
+ * per-recipient work of a broadcast runs on all shards at once instead of on the publishing thread.
+ * <p>
+ * Each shard is a stock {@link SimpleBrokerMessageHandler} behind a single-thread queue, so a session's
+ * frames leave the broker in the order they reached it. Like the stock broker, shards hand deliveries to the
+ * shared client outbound channel, whose pool only keeps them in order with {@code preservePublishOrder}.
+ * <p>
+ * Shard queues are bounded. When one is full, the {@link Overflow} policy decides what happens to a
+ * publication: the sender waits for room, or the shard's sessions miss it. A session's own frames always
+ * wait, since losing one would leave the shard's subscriptions out of step with the client.
+ * <p>
+ * {@code stomp.broker.fanout} is recorded once per publication, with the sessions of all shards added up,
+ * after the last shard is done with it.
+ */
+class ShardedBrokerMessageHandler extends AbstractBrokerMessageHandler {
+
+    private static final long STOP_TIMEOUT_SECONDS = 5;
+
+    private final SimpleBrokerMessageHandler[] shards;
+    private final ShardRegistry[] registries;
+    private final ThreadPoolExecutor[] loops;
+    private final int queueCapacity;
+    private final Overflow overflow;
+    private final Counter[] waited;
+    private final Counter[] dropped;
+    private final FanOutMeter fanOutMeter;
+
+    /**
+     * Takes over the channels, prefixes, heartbeat, registry and lifecycle settings of {@code template},
+     * which is not used afterwards. The shard registries should not be metered, as this handler records
+     * the fan-out.
+     */
+    ShardedBrokerMessageHandler(SimpleBrokerMessageHandler template, int shardCount, int queueCapacity, Overflow overflow,
+                                Supplier<SubscriptionRegistry> subscriptionRegistry, MeterRegistry meterRegistry) {
+        super(template.getClientInboundChannel(), template.getClientOutboundChannel(), template.getBrokerChannel(),
+                template.getDestinationPrefixes());
+        setApplicationEventPublisher(template.getApplicationEventPublisher());
+        setAutoStartup(template.isAutoStartup());
+        setPhase(template.getPhase());
+        setPreservePublishOrder(template.isPreservePublishOrder());
+        this.shards = new SimpleBrokerMessageHandler[shardCount];
+        this.registries = new ShardRegistry[shardCount];
+        this.loops = new ThreadPoolExecutor[shardCount];
+        this.queueCapacity = queueCapacity;
+        this.overflow = overflow;
+        this.waited = new Counter[shardCount];
+        this.dropped = new Counter[shardCount];
+        this.fanOutMeter = new FanOutMeter(meterRegistry);
+        // Spring offers setters but no getters for these two.
+        DirectFieldAccessor templateFields = new DirectFieldAccessor(template);
+        Integer cacheLimit = (Integer) templateFields.getPropertyValue("cacheLimit");
+        String selectorHeaderName = (String) templateFields.getPropertyValue("selectorHeaderName");
+        for (int i = 0; i < shardCount; i++) {
+            // Shards are driven by this handler only; their own inbound and broker channels never carry anything.
+            SimpleBrokerMessageHandler shard = new SimpleBrokerMessageHandler(new ExecutorSubscribableChannel(),
+                    template.getClientOutboundChannel(), new ExecutorSubscribableChannel(), template.getDestinationPrefixes());
+            registries[i] = new ShardRegistry(subscriptionRegistry.get());
+            shard.setSubscriptionRegistry(registries[i]);
+            shard.setCacheLimit(cacheLimit);
+            shard.setSelectorHeaderName(selectorHeaderName);
+            shard.setHeartbeatValue(template.getHeartbeatValue());
+            shard.setTaskScheduler(template.getTaskScheduler());
+            shard.setHeaderInitializer(template.getHeaderInitializer());
+            shard.setPreservePublishOrder(template.isPreservePublishOrder());
+            shards[i] = shard;
+            int index = i;
+            Gauge.builder("stomp.broker.shard.pending", () -> loops[index] == null ? 0 : loops[index].getQueue().size())
+                    .description("Messages waiting for a broker shard")
+                    .tag("shard", Integer.toString(i))
+                    .register(meterRegistry);
+            waited[i] = Counter.builder("stomp.broker.shard.waited")
+                    .description("Sends that waited for room in a full broker shard queue")
+                    .tag("shard", Integer.toString(i))
+                    .register(meterRegistry);
+            dropped[i] = Counter.builder("stomp.broker.shard.dropped")
+                    .description("Publications a broker shard skipped because its queue was full")
+                    .tag("shard", Integer.toString(i))
+                    .register(meterRegistry);
+        }
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    int shardOf(String sessionId) {
+        return Math.floorMod(sessionId.hashCode(), shards.length);
+    }
+
+    @Override
+    protected void startInternal() {
+        for (int i = 0; i < shards.length; i++) {
+            String name = "broker-shard-" + i;
+            loops[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new Thread(runnable, name), overflowPolicy(i));
+            shards[i].start();
+        }
+        publishBrokerAvailableEvent();
+    }
+
+    /**
+     * Lets every shard work off its queue before its sessions and heartbeat task are dropped.
+     */
+    @Override
+    protected void stopInternal() {
+        publishBrokerUnavailableEvent();
+        for (ThreadPoolExecutor loop : loops) {
+            loop.shutdown();
+        }
+        for (int i = 0; i < shards.length; i++) {
+            try {
+                loops[i].awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            shards[i].stop();
+        }
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.MESSAGE
+                && checkDestinationPrefix(SimpMessageHeaderAccessor.getDestination(headers))) {
+            FanOut tally = new FanOut(SimpMessageHeaderAccessor.getDestination(headers));
+            for (int i = 0; i < shards.length; i++) {
+                dispatch(i, message, tally);
+            }
+        } else if (sessionId != null) {
+            // Frames the broker ignores still reach the session's shard, which counts them as heartbeat activity.
+            dispatch(shardOf(sessionId), message, null);
+        }
+    }
+
+    private void dispatch(int shard, Message<?> message, @Nullable FanOut tally) {
+        loops[shard].execute(new Delivery(shards[shard], registries[shard], message, tally));
+    }
+
+    private RejectedExecutionHandler overflowPolicy(int shard) {
+        return (task, loop) -> {
+            if (loop.isShutdown()) {
+                // A stopping shard discards what still arrives instead of failing the sender.
+                if (task instanceof Delivery delivery) {
+                    delivery.skip();
+                }
+                return;
+            }
+            if (overflow == Overflow.DROP && task instanceof Delivery delivery && delivery.isPublication()) {
+                dropped[shard].increment();
+                delivery.skip();
+                return;
+            }
+            waited[shard].increment();
+            try {
+                loop.getQueue().put(task);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    enum Overflow {
+        /**
+         * Wait for room, so publishers slow down to the pace of the slowest shard.
+         */
+        BLOCK,
+        /**
+         * Skip the publication on that shard; its sessions miss it and the sender carries on.
+         */
+        DROP
+    }
+
+    private record Delivery(SimpleBrokerMessageHandler shard, ShardRegistry registry, Message<?> message,
+                            @Nullable FanOut tally) implements Runnable {
+
+        boolean isPublication() {
+            return SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE;
+        }
+
+        /**
+         * Counts a publication this shard never handled as reaching none of its sessions.
+         */
+        void skip() {
+            if (tally != null) {
+                tally.add(0);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                shard.handleMessage(message);
+            } finally {
+                int found = registry.takeFound();
+                if (tally != null) {
+                    tally.add(found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sessions one publication reached so far, recorded once every shard has added its share.
+     */
+    private final class FanOut {
+
+        @Nullable
+        private final String destination;
+        private final AtomicInteger sessions = new AtomicInteger();
+        private final AtomicInteger shardsLeft = new AtomicInteger(shards.length);
+
+        FanOut(@Nullable String destination) {
+            this.destination = destination;
+        }
+
+        void add(int found) {
+            sessions.addAndGet(found);
+            if (shardsLeft.decrementAndGet() == 0) {
+                fanOutMeter.record(destination, sessions.get());
+            }
+        }
+    }
+
+    /**
+     * Remembers how many sessions the last lookup resolved. Only the shard's own thread uses it.
+     */
+    private static final class ShardRegistry implements SubscriptionRegistry {
+
+        private final SubscriptionRegistry delegate;
+        private int found;
+
+        ShardRegistry(SubscriptionRegistry delegate) {
+            this.delegate = delegate;
+        }
+
+        int takeFound() {
+            int found = this.found;
+            this.found = 0;
+            return found;
+        }
+
+        @Override
+        public void registerSubscription(Message<?> subscribeMessage) {
+            delegate.registerSubscription(subscribeMessage);
+        }
+
+        @Override
+        public void unregisterSubscription(Message<?> unsubscribeMessage) {
+            delegate.unregisterSubscription(unsubscribeMessage);
+        }
+
+        @Override
+        public void unregisterAllSubscriptions(String sessionId) {
+            delegate.unregisterAllSubscriptions(sessionId);
+        }
+
+        @Override
+        public MultiValueMap<String, String> findSubscriptions(Message<?> message) {
+            MultiValueMap<String, String> subscriptions = delegate.findSubscriptions(message);
+            found = subscriptions.size();
+            return subscriptions;
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedBroker[shards=" + shards.length + ", " + shards[0] + "]";
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.MessageSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sheds load for slow consumers before Spring's hard send limits close them. Every session is wrapped so
+ * the time its current socket write started is known; while that write has been stuck for longer than
+ * {@link OutboundProperties#slowAfter()}, scheduled SYSTEM_* chat messages for the session are dropped on
+ * the outbound channel (or, in {@link OutboundProperties.Overflow#DISCONNECT} mode, the session is closed).
+ * User messages, control frames and snapshots are always passed on.
+ */
+class SlowConsumerGuard implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerGuard.class);
+
+    private final long slowAfterNanos;
+    private final OutboundProperties.Overflow overflow;
+    private final Map<String, TrackedSession> sessions = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    private final Counter disconnected;
+
+    SlowConsumerGuard(OutboundProperties properties, MeterRegistry meterRegistry) {
+        this.slowAfterNanos = properties.slowAfter().toNanos();
+        this.overflow = properties.overflow();
+        this.dropped = Counter.builder("stomp.outbound.dropped")
+                .description("Scheduled messages not sent to slow consumers")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("stomp.outbound.slow.disconnects")
+                .description("Sessions closed for being slow consumers")
+                .register(meterRegistry);
+        meterRegistry.gauge("stomp.outbound.slow.sessions", this, SlowConsumerGuard::slowSessionCount);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        TrackedSession session = sessionId == null ? null : sessions.get(sessionId);
+        if (session == null || !session.isSlow(System.nanoTime(), slowAfterNanos)) {
+            return message;
+        }
+        if (overflow == OutboundProperties.Overflow.DISCONNECT) {
+            session.closeSlow();
+            return null;
+        }
+        if (message.getHeaders().get(EncodedChatMessage.HEADER) instanceof EncodedChatMessage encoded
+                && encoded.message().source() != MessageSource.USER_MESSAGE) {
+            dropped.increment();
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                TrackedSession tracked = new TrackedSession(session);
+                sessions.put(session.getId(), tracked);
+                super.afterConnectionEstablished(tracked);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                WebSocketSession tracked = sessions.get(session.getId());
+                super.handleMessage(tracked != null ? tracked : session, message);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                TrackedSession tracked = sessions.remove(session.getId());
+                super.afterConnectionClosed(tracked != null ? tracked : session, closeStatus);
+            }
+        };
+    }
+
+    private double slowSessionCount() {
+        long now = System.nanoTime();
+        return sessions.values().stream().filter(session -> session.isSlow(now, slowAfterNanos)).count();
+    }
+
+    private final class TrackedSession extends WebSocketSessionDecorator {
+
+        private volatile long sendStartedAt;
+        private final AtomicBoolean closing = new AtomicBoolean();
+
+        TrackedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            // Spring's ConcurrentWebSocketSessionDecorator wraps this one, so calls here are the actual,
+            // serialized socket writes.
+            sendStartedAt = System.nanoTime();
+            try {
+                super.sendMessage(message);
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        boolean isSlow(long now, long thresholdNanos) {
+            long started = sendStartedAt;
+            return started != 0 && now - started > thresholdNanos;
+        }
+
+        void closeSlow() {
+            if (closing.compareAndSet(false, true)) {
+                disconnected.increment();
+                logger.info("Closing slow consumer session {}", getId());
+                try {
+                    close(CloseStatus.SESSION_NOT_RELIABLE);
+                } catch (IOException ex) {
+                    logger.debug("Failed to close slow session {}: {}", getId(), ex.getMessage());
+                }
+            }
+        }
+    }
+}
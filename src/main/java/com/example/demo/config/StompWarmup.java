@@ -0,0 +1,130 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.ChatMessagePayload;
+import com.example.demo.chat.dto.ErrorPayload;
+import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.example.demo.chat.dto.PresenceDeltaPayload;
+import com.example.demo.chat.dto.SendHerePayload;
+import com.example.demo.chat.dto.SendMePayload;
+import com.example.demo.chat.dto.SendMessageRequest;
+import com.example.demo.chat.dto.SendUsPayload;
+import com.example.demo.chat.dto.SessionDelta;
+import com.example.demo.chat.dto.SessionRegistrationRequest;
+import com.example.demo.chat.dto.SessionSnapshot;
+import com.example.demo.chat.dto.ValueUpdateRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Does the one-off work of the first STOMP session at startup instead of on the first client's clock.
+ * <p>
+ * While the context refreshes it loads the frame codec and has Jackson build the (de)serializers of every
+ * payload type crossing the wire. Once the server is up, and before the application reports itself ready
+ * for traffic, it opens a loopback session through the real endpoint, sends one invalid settings update
+ * that is answered with an error, and disconnects. Nothing is registered, so no presence change is published.
+ * <p>
+ * With {@code exitAfterLoopback} the application exits after the loopback session, which is how the
+ * {@code fast-startup} build's CDS training run covers the handshake and CONNECT path.
+ */
+class StompWarmup implements SmartInitializingSingleton, ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompWarmup.class);
+    private static final long LOOPBACK_TIMEOUT_SECONDS = 5;
+
+    private static final List<Class<?>> INBOUND = List.of(SessionRegistrationRequest.class, SendMessageRequest.class,
+            ValueUpdateRequest.class);
+    private static final List<Class<?>> OUTBOUND = List.of(SessionSnapshot.class, SessionDelta.class, ChatMessagePayload.class,
+            OnlineUsersPayload.class, PresenceDeltaPayload.class, SendMePayload.class, SendUsPayload.class,
+            SendHerePayload.class, ErrorPayload.class);
+    private static final String FRAMES = """
+            CONNECT
+            accept-version:1.2
+            heart-beat:10000,10000
+            chat-encoding:compact
+
+            \0SUBSCRIBE
+            id:sub-0
+            destination:/topic/messages
+
+            \0SEND
+            destination:/app/session/register
+            content-type:application/json
+
+            {"me":"warmup"}\0""";
+
+    private final ObjectMapper objectMapper;
+    private final boolean loopback;
+    private final boolean exitAfterLoopback;
+
+    StompWarmup(ObjectMapper objectMapper, boolean loopback, boolean exitAfterLoopback) {
+        this.objectMapper = objectMapper;
+        this.loopback = loopback;
+        this.exitAfterLoopback = exitAfterLoopback;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        long started = System.nanoTime();
+        StompEncoder encoder = new StompEncoder();
+        for (Message<byte[]> frame : new StompDecoder().decode(ByteBuffer.wrap(FRAMES.getBytes(StandardCharsets.UTF_8)))) {
+            encoder.encode(frame);
+        }
+        StompHeaderAccessor connected = StompHeaderAccessor.create(StompCommand.CONNECTED);
+        connected.setHeartbeat(10_000, 10_000);
+        encoder.encode(MessageBuilder.createMessage(new byte[0], connected.getMessageHeaders()));
+        // Building a reader or writer for a type resolves and caches its (de)serializer in the shared mapper.
+        INBOUND.forEach(objectMapper::readerFor);
+        OUTBOUND.forEach(objectMapper::writerFor);
+        logger.debug("STOMP codec and payload warm-up took {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (!loopback || !(event.getApplicationContext() instanceof WebServerApplicationContext context)) {
+            return;
+        }
+        long started = System.nanoTime();
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
+        try {
+            StompSession session = stompClient.connectAsync("ws://localhost:" + context.getWebServer().getPort() + "/ws",
+                    new StompSessionHandlerAdapter() {
+                    }).get(LOOPBACK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            session.subscribe("/topic/online", new StompSessionHandlerAdapter() {
+            });
+            session.send("/app/settings/send-here", Map.of("value", ""));
+            session.disconnect();
+            logger.info("Loopback STOMP session warmed up the endpoint in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception ex) {
+            logger.warn("Loopback STOMP warm-up failed, the first client will pay for it: {}", ex.toString());
+        } finally {
+            stompClient.stop();
+        }
+        if (exitAfterLoopback) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+
+/**
+ * Runs {@code @Scheduled} jobs on virtual threads when {@code spring.threads.virtual.enabled} is set on a
+ * Java 21+ runtime. Otherwise the jobs stay on the default platform-thread scheduler.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+class VirtualThreadSchedulingConfig implements SchedulingConfigurer {
+
+    @Bean
+    SimpleAsyncTaskScheduler virtualThreadTaskScheduler() {
+        SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setVirtualThreads(true);
+        return scheduler;
+    }
+
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar registrar) {
+        registrar.setScheduler(virtualThreadTaskScheduler());
+    }
+}
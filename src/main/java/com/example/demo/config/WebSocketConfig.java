@@ -1,40 +1,192 @@
 package com.example.demo.config;
 
+import com.example.demo.chat.service.ChatService;
+import com.example.demo.chat.service.IdleSessionReaper;
+import com.example.demo.chat.service.RealtimeStateService;
+import com.example.demo.chat.service.RealtimeStateService.SessionState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.messaging.simp.broker.DefaultSubscriptionRegistry;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SubscriptionRegistry;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.ImmutableMessageChannelInterceptor;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.function.Supplier;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@EnableConfigurationProperties({DiagnosticsProperties.class, HeartbeatProperties.class, OutboundProperties.class, RateLimitProperties.class})
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
-    private final LoggingChannelInterceptor inboundLoggingInterceptor = new LoggingChannelInterceptor("inbound");
-    private final LoggingChannelInterceptor outboundLoggingInterceptor = new LoggingChannelInterceptor("outbound");
-    private final LoggingHandshakeInterceptor loggingHandshakeInterceptor = new LoggingHandshakeInterceptor();
+    private final FrameDiagnostics diagnostics;
+    private final boolean virtualThreads;
+    private final LoggingChannelInterceptor inboundLoggingInterceptor;
+    private final LoggingChannelInterceptor outboundLoggingInterceptor;
+    private final LoggingHandshakeInterceptor loggingHandshakeInterceptor;
+    private final ChannelMetricsInterceptor inboundMetricsInterceptor;
+    private final ChannelMetricsInterceptor outboundMetricsInterceptor;
+    private final ChannelMetricsInterceptor brokerMetricsInterceptor;
+    private final WireEncodingInterceptor wireEncodingInterceptor;
+    private final OutboundProperties outbound;
+    private final SlowConsumerGuard slowConsumerGuard;
+    private final InboundRateLimiter rateLimiter;
+    private final HeartbeatProperties heartbeat;
+    private final TaskScheduler heartbeatScheduler;
+    private final SessionActivityInterceptor sessionActivityInterceptor;
+    private final ObserverFeed observerFeed;
+    private final boolean preservePublishOrder;
+
+    WebSocketConfig(FrameDiagnostics diagnostics, MeterRegistry meterRegistry, Environment environment, OutboundProperties outbound,
+                    RateLimitProperties rateLimits, ObjectProvider<RealtimeStateService> stateService,
+                    ObjectProvider<ChatService> chatService, HeartbeatProperties heartbeat,
+                    @Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler heartbeatScheduler,
+                    ObjectProvider<IdleSessionReaper> idleSessionReaper, ObserverProperties observers, ObserverFeed observerFeed,
+                    @Value("${app.wire.compact-enabled:true}") boolean compactEncoding,
+                    @Value("${app.broker.preserve-publish-order:false}") boolean preservePublishOrder) {
+        this.diagnostics = diagnostics;
+        this.virtualThreads = Threading.VIRTUAL.isActive(environment);
+        this.inboundMetricsInterceptor = new ChannelMetricsInterceptor("clientInbound", meterRegistry);
+        this.outboundMetricsInterceptor = new ChannelMetricsInterceptor("clientOutbound", meterRegistry);
+        this.brokerMetricsInterceptor = new ChannelMetricsInterceptor("broker", meterRegistry);
+        this.inboundLoggingInterceptor = new LoggingChannelInterceptor("inbound", diagnostics);
+        this.outboundLoggingInterceptor = new LoggingChannelInterceptor("outbound", diagnostics);
+        this.loggingHandshakeInterceptor = new LoggingHandshakeInterceptor(diagnostics);
+        this.wireEncodingInterceptor = compactEncoding ? new WireEncodingInterceptor() : null;
+        this.outbound = outbound;
+        this.slowConsumerGuard = new SlowConsumerGuard(outbound, meterRegistry);
+        // Resolved lazily: both services depend on the messaging template this configuration helps build.
+        this.rateLimiter = !rateLimits.enabled() ? null : new InboundRateLimiter(rateLimits, meterRegistry,
+                sessionId -> stateService.getObject().findSession(sessionId).map(SessionState::userEmoji).orElse(null),
+                (sessionId, destination) -> chatService.getObject().notifyThrottled(sessionId, destination));
+        this.heartbeat = heartbeat;
+        this.heartbeatScheduler = heartbeatScheduler;
+        this.observerFeed = observers.enabled() ? observerFeed : null;
+        this.sessionActivityInterceptor = heartbeat.idleTimeout().isZero() ? null : new SessionActivityInterceptor(idleSessionReaper);
+        this.preservePublishOrder = preservePublishOrder;
+    }
+
+    @Bean
+    static BeanPostProcessor simpleBrokerInstaller(@Value("${app.broker.exact-match-registry:true}") boolean exactMatchRegistry,
+                                                   @Value("${app.broker.shards:1}") int shards,
+                                                   @Value("${app.broker.shard-queue-capacity:10000}") int shardQueueCapacity,
+                                                   @Value("${app.broker.shard-overflow:block}") ShardedBrokerMessageHandler.Overflow shardOverflow,
+                                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        Supplier<SubscriptionRegistry> registries = () ->
+                exactMatchRegistry ? new ExactMatchSubscriptionRegistry() : new DefaultSubscriptionRegistry();
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof SimpleBrokerMessageHandler handler) {
+                    handler.setSubscriptionRegistry(new MeteredSubscriptionRegistry(registries.get(), meterRegistry.getObject()));
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (shards > 1 && bean instanceof SimpleBrokerMessageHandler handler) {
+                    // Shards get unmetered registries; the sharded handler records each publication's fan-out once.
+                    return new ShardedBrokerMessageHandler(handler, shards, shardQueueCapacity, shardOverflow, registries,
+                            meterRegistry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    StompWarmup stompWarmup(ObjectMapper objectMapper, @Value("${app.warmup.loopback:true}") boolean loopback,
+                            @Value("${app.warmup.exit:false}") boolean exitAfterLoopback) {
+        return new StompWarmup(objectMapper, loopback, exitAfterLoopback);
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        config.enableSimpleBroker("/topic")
+                .setHeartbeatValue(heartbeat.toHeartbeatValue())
+                .setTaskScheduler(heartbeatScheduler);
         config.setApplicationDestinationPrefixes("/app");
+        config.setPreservePublishOrder(preservePublishOrder);
+        config.configureBrokerChannel().interceptors(brokerMetricsInterceptor);
+        if (observerFeed != null) {
+            config.configureBrokerChannel().interceptors(observerFeed);
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
-        registry.addEndpoint("/ws")
-                .addInterceptors(loggingHandshakeInterceptor)
-                .setAllowedOrigins("*");
+        var endpoint = registry.addEndpoint("/ws");
+        if (diagnostics.enabled()) {
+            endpoint.addInterceptors(loggingHandshakeInterceptor);
+        }
+        endpoint.setAllowedOrigins("*");
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit((int) outbound.sendBufferSize().toBytes());
+        registration.setSendTimeLimit((int) outbound.sendTimeLimit().toMillis());
+        registration.addDecoratorFactory(slowConsumerGuard);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(inboundLoggingInterceptor);
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("clientInboundChannel-"));
+        }
+        registration.interceptors(inboundMetricsInterceptor);
+        if (sessionActivityInterceptor != null) {
+            registration.interceptors(sessionActivityInterceptor);
+        }
+        if (rateLimiter != null) {
+            registration.interceptors(rateLimiter);
+        }
+        if (wireEncodingInterceptor != null) {
+            registration.interceptors(wireEncodingInterceptor.inbound);
+        }
+        if (diagnostics.enabled()) {
+            registration.interceptors(inboundLoggingInterceptor);
+        }
+        // Seals headers after the interceptors above, so the STOMP handler leaves them mutable for the
+        // metrics interceptor to stamp instead of making it copy every inbound message.
+        registration.interceptors(new ImmutableMessageChannelInterceptor());
     }
 
     @Override
     public void configureClientOutboundChannel(ChannelRegistration registration) {
-        registration.interceptors(outboundLoggingInterceptor);
+        if (virtualThreads) {
+            registration.executor(virtualThreadExecutor("clientOutboundChannel-"));
+        }
+        registration.interceptors(outboundMetricsInterceptor, slowConsumerGuard);
+        if (wireEncodingInterceptor != null) {
+            registration.interceptors(wireEncodingInterceptor);
+        }
+        if (diagnostics.enabled()) {
+            registration.interceptors(outboundLoggingInterceptor);
+        }
+    }
+
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
     }
 }
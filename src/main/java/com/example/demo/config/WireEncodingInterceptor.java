@@ -0,0 +1,60 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-connection payload encoding. A client that sends {@code chat-encoding:compact} on CONNECT is
+ * remembered on the inbound channel; on the outbound channel, chat messages to that session carry
+ * {@link EncodedChatMessage#compactPayload()} instead of the JSON object. Every other frame, including
+ * snapshots, is left alone.
+ */
+class WireEncodingInterceptor implements ChannelInterceptor {
+
+    static final String ENCODING_HEADER = "chat-encoding";
+    static final String COMPACT = "compact";
+
+    private final Set<String> compactSessions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Registered on the client inbound channel to track negotiation.
+     */
+    final ChannelInterceptor inbound = new ChannelInterceptor() {
+        @Override
+        public Message<?> preSend(Message<?> message, MessageChannel channel) {
+            SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            if (sessionId == null) {
+                return message;
+            }
+            if (type == SimpMessageType.CONNECT
+                    && COMPACT.equals(SimpMessageHeaderAccessor.wrap(message).getFirstNativeHeader(ENCODING_HEADER))) {
+                compactSessions.add(sessionId);
+            } else if (type == SimpMessageType.DISCONNECT) {
+                compactSessions.remove(sessionId);
+            }
+            return message;
+        }
+    };
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (compactSessions.isEmpty()
+                || !(message.getHeaders().get(EncodedChatMessage.HEADER) instanceof EncodedChatMessage encoded)) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null || !compactSessions.contains(sessionId)) {
+            return message;
+        }
+        return MessageBuilder.createMessage(encoded.compactPayload(), message.getHeaders());
+    }
+}
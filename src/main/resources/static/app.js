@@ -5,6 +5,13 @@ const DEFAULT_FOODS = ["🍎", "🍌", "🍇", "🍕", "🍔", "🍣", "🍩", "
 let animalOptions = [...DEFAULT_ANIMALS];
 let foodOptions = [...DEFAULT_FOODS];
 
+// Compact message encoding, negotiated on CONNECT. Tables mirror the server's enum order and symbol table.
+const AUDIENCES = ["EVERYONE", "USER", "DEVICE"];
+const SOURCES = ["USER_MESSAGE", "SYSTEM_BROADCAST", "SYSTEM_USER_SCHEDULE", "SYSTEM_DEVICE_SCHEDULE"];
+let symbols = [...DEFAULT_ANIMALS, ...DEFAULT_FOODS, EVERYONE, "SYSTEM"];
+// Option lists come from /catalog/{version}; the browser caches each version indefinitely.
+let catalogVersion = null;
+
 const elements = {
     meButton: document.getElementById("meButton"),
     sendToButton: document.getElementById("sendToButton"),
@@ -25,8 +32,13 @@ let messageIndex = 0;
 let sendTargets = [EVERYONE];
 let sendTargetIndex = 0;
 let onlineUsers = [];
+// Version of the presence state in onlineUsers; deltas at or below it are already reflected.
+let presenceVersion = 0;
 let messages = [];
 const seenMessageIds = new Set();
+// Resume point for reconnects: the server replies with a delta instead of a full snapshot.
+let lastSequence = null;
+let stateVersion = null;
 
 // Indices for cycling buttons
 let meIndex = 0;
@@ -88,7 +100,7 @@ function registerListeners() {
         currentMe = animalOptions[meIndex];
         elements.meButton.textContent = currentMe;
         subscribeUserTopics();
-        registerSession();
+        registerSession(false);
         updateSendToTargets();
         logDiagnostic("ME_CHANGED", currentMe);
     });
@@ -153,9 +165,10 @@ function connect() {
     }
     stompClient = new StompNS.Client({
         brokerURL: `${window.location.protocol === "https:" ? "wss" : "ws"}://${window.location.host}/ws`,
+        connectHeaders: {"chat-encoding": "compact"},
         reconnectDelay: 5000,
-        heartbeatIncoming: 0,
-        heartbeatOutgoing: 0,
+        heartbeatIncoming: 10000,
+        heartbeatOutgoing: 10000,
         debug: message => {
             if (message && !message.includes("PING")) {
                 logDiagnostic("STOMP_DEBUG", message);
@@ -170,7 +183,7 @@ function connect() {
         subscribeStaticTopics();
         subscribeDeviceTopics();
         subscribeUserTopics();
-        registerSession();
+        registerSession(true);
     };
 
     stompClient.onStompError = frame => {
@@ -229,18 +242,13 @@ function resetSubscriptions() {
 function subscribeStaticTopics() {
     unsubscribe("broadcast");
     subscriptions.broadcast = stompClient.subscribe("/topic/messages", messageFrame => {
-        const payload = JSON.parse(messageFrame.body);
-        appendMessage(payload);
+        appendMessage(decodeMessage(messageFrame.body));
     });
     logDiagnostic("SUBSCRIBED", "/topic/messages");
 
     unsubscribe("online");
     subscriptions.online = stompClient.subscribe("/topic/online", messageFrame => {
-        const payload = JSON.parse(messageFrame.body);
-        if (Array.isArray(payload.users)) {
-            onlineUsers = payload.users;
-            updateSendToTargets();
-        }
+        applyPresence(JSON.parse(messageFrame.body));
     });
     logDiagnostic("SUBSCRIBED", "/topic/online");
 
@@ -260,8 +268,7 @@ function subscribeDeviceTopics() {
     }
     unsubscribe("deviceMessages");
     subscriptions.deviceMessages = stompClient.subscribe(`/topic/device/${sessionId}/messages`, messageFrame => {
-        const payload = JSON.parse(messageFrame.body);
-        appendMessage(payload);
+        appendMessage(decodeMessage(messageFrame.body));
     });
     logDiagnostic("SUBSCRIBED", `/topic/device/${sessionId}/messages`);
 
@@ -280,8 +287,7 @@ function subscribeUserTopics() {
     unsubscribe("userMessages");
     unsubscribe("userSettings");
     subscriptions.userMessages = stompClient.subscribe(`/topic/user/${currentMe}/messages`, messageFrame => {
-        const payload = JSON.parse(messageFrame.body);
-        appendMessage(payload);
+        appendMessage(decodeMessage(messageFrame.body));
     });
     logDiagnostic("SUBSCRIBED", `/topic/user/${currentMe}/messages`);
     subscriptions.userSettings = stompClient.subscribe(`/topic/settings/user/${currentMe}`, messageFrame => {
@@ -304,7 +310,7 @@ function unsubscribe(key) {
     }
 }
 
-function registerSession() {
+function registerSession(resume) {
     if (!stompClient || !stompClient.connected) {
         return;
     }
@@ -313,6 +319,10 @@ function registerSession() {
         sendMe: elements.sendMeButton.textContent,
         sendHere: elements.sendHereButton.textContent
     };
+    if (resume && lastSequence !== null && stateVersion) {
+        payload.lastSequence = lastSequence;
+        payload.stateVersion = stateVersion;
+    }
     stompClient.publish({
         destination: "/app/session/register",
         body: JSON.stringify(payload)
@@ -365,14 +375,41 @@ function handleControlPayload(payload) {
         return;
     }
 
+    if (payload.sessionId && Array.isArray(payload.missedMessages)) {
+        applyDelta(payload);
+        return;
+    }
+
     if (payload.sessionId && payload.me) {
         applySnapshot(payload);
     }
 }
 
-function applySnapshot(snapshot) {
-    if (Array.isArray(snapshot.animalOptions) && snapshot.animalOptions.length) {
-        animalOptions = snapshot.animalOptions;
+function loadCatalog(version) {
+    if (!version || version === catalogVersion) {
+        return;
+    }
+    fetch(`/catalog/${encodeURIComponent(version)}`)
+        .then(response => {
+            if (!response.ok) {
+                throw new Error(`HTTP ${response.status}`);
+            }
+            return response.json();
+        })
+        .then(catalog => {
+            catalogVersion = catalog.version;
+            applyCatalog(catalog);
+            logDiagnostic("CATALOG_LOADED", catalog.version);
+        })
+        .catch(error => logDiagnostic("CATALOG_FAILED", error instanceof Error ? error.message : String(error)));
+}
+
+function applyCatalog(catalog) {
+    if (Array.isArray(catalog.symbols) && catalog.symbols.length) {
+        symbols = catalog.symbols;
+    }
+    if (Array.isArray(catalog.animalOptions) && catalog.animalOptions.length) {
+        animalOptions = catalog.animalOptions;
         // Preserve currentMe if possible, else fallback to first
         const idx = animalOptions.indexOf(currentMe);
         meIndex = idx >= 0 ? idx : 0;
@@ -380,8 +417,8 @@ function applySnapshot(snapshot) {
         elements.meButton.textContent = currentMe;
         subscribeUserTopics();
     }
-    if (Array.isArray(snapshot.foodOptions) && snapshot.foodOptions.length) {
-        foodOptions = snapshot.foodOptions;
+    if (Array.isArray(catalog.foodOptions) && catalog.foodOptions.length) {
+        foodOptions = catalog.foodOptions;
         // Re-sync indices based on current button labels where possible
         const currentSendMe = elements.sendMeButton.textContent;
         const currentSendHere = elements.sendHereButton.textContent;
@@ -403,6 +440,35 @@ function applySnapshot(snapshot) {
         messageIndex = 0;
         elements.messageButton.textContent = foodOptions[messageIndex];
     }
+}
+
+function applyDelta(delta) {
+    logDiagnostic("SESSION_RESUMED", `missed=${delta.missedMessages.length}`);
+    stateVersion = delta.stateVersion ?? stateVersion;
+    noteSequence(delta.lastSequence);
+    if (delta.sendMe) {
+        applySendMe(delta.sendMe);
+    }
+    if (delta.sendUs) {
+        applySendUs(delta.sendUs);
+    }
+    if (Array.isArray(delta.onlineUsers)) {
+        applyPresence({users: delta.onlineUsers, version: delta.presenceVersion});
+    }
+    delta.missedMessages.forEach(msg => appendMessage(msg));
+    // Missed messages may arrive after ones delivered live since the reconnect.
+    messages.sort((a, b) => (a.sequence ?? 0) - (b.sequence ?? 0));
+    renderMessages();
+}
+
+function noteSequence(sequence) {
+    if (typeof sequence === "number" && sequence >= 0 && (lastSequence === null || sequence > lastSequence)) {
+        lastSequence = sequence;
+    }
+}
+
+function applySnapshot(snapshot) {
+    loadCatalog(snapshot.catalogVersion);
 
     if (snapshot.me) {
         currentMe = snapshot.me;
@@ -422,28 +488,62 @@ function applySnapshot(snapshot) {
         applySendUs(snapshot.sendUs);
     }
     if (Array.isArray(snapshot.onlineUsers)) {
-        onlineUsers = snapshot.onlineUsers;
-        updateSendToTargets();
+        applyPresence({users: snapshot.onlineUsers, version: snapshot.presenceVersion});
     }
     if (Array.isArray(snapshot.recentMessages)) {
         messages = [];
         seenMessageIds.clear();
         snapshot.recentMessages.forEach(msg => appendMessage(msg));
     }
+    stateVersion = snapshot.stateVersion ?? null;
+    lastSequence = null;
+    noteSequence(snapshot.lastSequence);
+}
+
+// Accepts both the JSON object form and the compact array form
+// [sequence | id, epochMillis, sender, target, audience, source, content].
+function decodeMessage(body) {
+    const payload = JSON.parse(body);
+    if (!Array.isArray(payload)) {
+        return payload;
+    }
+    const [key, millis, sender, target, audience, source, content] = payload;
+    const sequence = typeof key === "number" ? key : -1;
+    return {
+        id: sequence >= 0 ? `#${sequence}` : key,
+        timestamp: new Date(millis).toISOString(),
+        sender: symbol(sender),
+        target: symbol(target),
+        audience: AUDIENCES[audience],
+        source: SOURCES[source],
+        content: symbol(content),
+        sequence
+    };
+}
+
+function symbol(value) {
+    return typeof value === "number" ? symbols[value] : value;
+}
+
+// Snapshots carry the JSON form and live frames may be compact, so messages are keyed by sequence when known.
+function messageKey(payload) {
+    return typeof payload.sequence === "number" && payload.sequence >= 0 ? `#${payload.sequence}` : payload.id;
 }
 
 function appendMessage(payload) {
     if (!payload || !payload.id) {
         return;
     }
-    if (seenMessageIds.has(payload.id)) {
+    const key = messageKey(payload);
+    if (seenMessageIds.has(key)) {
         return;
     }
-    seenMessageIds.add(payload.id);
+    seenMessageIds.add(key);
+    noteSequence(payload.sequence);
     messages.push(payload);
     if (messages.length > 200) {
         const removed = messages.splice(0, messages.length - 200);
-        removed.forEach(msg => seenMessageIds.delete(msg.id));
+        removed.forEach(msg => seenMessageIds.delete(messageKey(msg)));
     }
     renderMessages();
 }
@@ -497,6 +597,36 @@ function updateSendToTargets() {
     logDiagnostic("SEND_TO_UPDATED", sendTargets.join(","));
 }
 
+// Full lists replace the local state; joined/left deltas apply on top of it. A gap in delta versions
+// is tolerated (joins and leaves are idempotent) and corrected by the next periodic full list.
+function applyPresence(payload) {
+    const version = typeof payload.version === "number" ? payload.version : 0;
+    if (Array.isArray(payload.users)) {
+        onlineUsers = payload.users;
+        presenceVersion = version;
+    } else if (Array.isArray(payload.joined) && Array.isArray(payload.left)) {
+        if (version <= presenceVersion) {
+            return;
+        }
+        if (version !== presenceVersion + 1) {
+            logDiagnostic("PRESENCE_GAP", `have=${presenceVersion} got=${version}`);
+        }
+        const left = new Set(payload.left);
+        const next = onlineUsers.filter(user => !left.has(user));
+        payload.joined.forEach(user => {
+            if (!next.includes(user)) {
+                next.push(user);
+            }
+        });
+        onlineUsers = animalOptions.filter(user => next.includes(user))
+            .concat(next.filter(user => !animalOptions.includes(user)));
+        presenceVersion = version;
+    } else {
+        return;
+    }
+    updateSendToTargets();
+}
+
 function applySendMe(value) {
     const idx = foodOptions.indexOf(value);
     sendMeIndex = idx >= 0 ? idx : 0;
@@ -0,0 +1,264 @@
+package com.example.demo.chat;
+
+import com.example.demo.chat.AppConstants;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatFlowIntegrationTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private WebSocketStompClient stompClient;
+
+    @AfterEach
+    void tearDown() {
+        if (stompClient != null) {
+            stompClient.stop();
+        }
+    }
+
+    @Test
+    void registrationSnapshotAndBroadcastUseTheJsonPayloadShape() throws Exception {
+        StompSession session = connect();
+
+        // The server-side session id is not exposed to the client, so listen on every device control topic.
+        BlockingQueue<JsonNode> control = subscribe(session, "/topic/device/*/control");
+        BlockingQueue<JsonNode> broadcasts = subscribe(session, "/topic/messages");
+        session.send("/app/session/register", Map.of("me", "🦊", "sendMe", "🍕", "sendHere", "🍔"));
+
+        JsonNode snapshot = awaitFrame(control, frame -> frame.has("me"));
+        assertThat(snapshot.get("me").asText()).isEqualTo("🦊");
+        assertThat(snapshot.get("recentMessages").isArray()).isTrue();
+        assertThat(snapshot.has("animalOptions")).isFalse();
+        assertThat(snapshot.get("catalogVersion").asText()).isNotBlank();
+
+        session.send("/app/message/send", Map.of("target", "EVERYONE", "content", "🍩"));
+
+        JsonNode message = awaitFrame(broadcasts, frame -> "🦊".equals(frame.path("sender").asText()));
+        assertThat(message.get("content").asText()).isEqualTo("🍩");
+        assertThat(message.get("audience").asText()).isEqualTo("EVERYONE");
+        assertThat(message.get("source").asText()).isEqualTo("USER_MESSAGE");
+        assertThat(message.get("id").asText()).isNotBlank();
+        assertThat(message.get("timestamp").asText()).isNotBlank();
+
+        session.send("/app/session/register", Map.of("me", "🦊"));
+        JsonNode resnapshot = awaitFrame(control, frame -> frame.path("recentMessages").size() > 0);
+        JsonNode recent = resnapshot.get("recentMessages").get(resnapshot.get("recentMessages").size() - 1);
+        assertThat(recent).isEqualTo(message);
+        session.disconnect();
+    }
+
+    @Test
+    void resumedRegistrationOnlyCarriesMissedMessages() throws Exception {
+        StompSession session = connect();
+        BlockingQueue<JsonNode> control = subscribe(session, "/topic/device/*/control");
+        BlockingQueue<JsonNode> broadcasts = subscribe(session, "/topic/messages");
+        session.send("/app/session/register", Map.of("me", "🐼"));
+        JsonNode snapshot = awaitFrame(control, frame -> "🐼".equals(frame.path("me").asText()) && frame.has("recentMessages"));
+
+        session.send("/app/message/send", Map.of("target", "EVERYONE", "content", "🍰"));
+        JsonNode message = awaitFrame(broadcasts, frame -> "🐼".equals(frame.path("sender").asText()));
+        assertThat(message.get("sequence").asLong()).isGreaterThan(snapshot.get("lastSequence").asLong());
+
+        session.send("/app/session/register", Map.of("me", "🐼",
+                "lastSequence", snapshot.get("lastSequence").asLong(),
+                "stateVersion", snapshot.get("stateVersion").asText()));
+        JsonNode delta = awaitFrame(control, frame -> frame.has("missedMessages"));
+        assertThat(delta.get("missedMessages")).contains(message);
+        assertThat(delta.has("recentMessages")).isFalse();
+        assertThat(delta.get("lastSequence").asLong()).isGreaterThanOrEqualTo(message.get("sequence").asLong());
+
+        session.send("/app/session/register", Map.of("me", "🐼", "lastSequence", 0, "stateVersion", "stale.0"));
+        JsonNode fallback = awaitFrame(control, frame -> frame.has("recentMessages"));
+        assertThat(fallback.get("stateVersion").asText()).isEqualTo(delta.get("stateVersion").asText());
+        session.disconnect();
+    }
+
+    @Test
+    void compactConnectionsReceiveArrayPayloads() throws Exception {
+        StompHeaders connectHeaders = new StompHeaders();
+        connectHeaders.add("chat-encoding", "compact");
+        StompSession compact = connect(connectHeaders);
+        BlockingQueue<JsonNode> compactBroadcasts = subscribe(compact, "/topic/messages");
+        BlockingQueue<JsonNode> compactControl = subscribe(compact, "/topic/device/*/control");
+        compact.send("/app/session/register", Map.of("me", "🐨"));
+        awaitFrame(compactControl, frame -> "🐨".equals(frame.path("me").asText()));
+
+        compact.send("/app/message/send", Map.of("target", "EVERYONE", "content", "🥐"));
+
+        JsonNode message = awaitFrame(compactBroadcasts, JsonNode::isArray);
+        assertThat(message.get(0).isNumber()).isTrue();
+        assertThat(message.get(2).asInt()).isEqualTo(AppConstants.ANIMAL_EMOJIS.indexOf("🐨"));
+        assertThat(message.get(6).asInt()).isEqualTo(AppConstants.ANIMAL_EMOJIS.size() + AppConstants.FOOD_EMOJIS.indexOf("🥐"));
+        compact.disconnect();
+    }
+
+    @Test
+    void observersReceiveBroadcastsAsServerSentEvents() throws Exception {
+        HttpResponse<Stream<String>> feed = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/observe")).build(), HttpResponse.BodyHandlers.ofLines());
+        assertThat(feed.headers().firstValue("Content-Type")).hasValueSatisfying(type -> assertThat(type).startsWith("text/event-stream"));
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        Thread reader = new Thread(() -> feed.body().forEach(lines::add));
+        reader.setDaemon(true);
+        reader.start();
+
+        StompSession session = connect();
+        BlockingQueue<JsonNode> control = subscribe(session, "/topic/device/*/control");
+        session.send("/app/session/register", Map.of("me", "🐯"));
+        awaitFrame(control, frame -> "🐯".equals(frame.path("me").asText()));
+        session.send("/app/message/send", Map.of("target", "EVERYONE", "content", "🍪"));
+
+        String event = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            String line = lines.poll(100, TimeUnit.MILLISECONDS);
+            if (line != null && line.startsWith("event: ")) {
+                event = line;
+            } else if (line != null && line.startsWith("data: ") && "event: message".equals(event)) {
+                JsonNode message = objectMapper.readTree(line.substring("data: ".length()));
+                if ("🐯".equals(message.path("sender").asText())) {
+                    assertThat(message.get("content").asText()).isEqualTo("🍪");
+                    session.disconnect();
+                    feed.body().close();
+                    return;
+                }
+            }
+        }
+        throw new AssertionError("No matching event received");
+    }
+
+    @Test
+    void catalogIsServedImmutableUnderItsVersionAndRevalidatesOtherwise() throws Exception {
+        ResponseEntity<String> current = restTemplate.getForEntity("/catalog", String.class);
+        JsonNode catalog = objectMapper.readTree(current.getBody());
+        String version = catalog.get("version").asText();
+        assertThat(current.getHeaders().getETag()).isEqualTo("\"" + version + "\"");
+        assertThat(current.getHeaders().getCacheControl()).isEqualTo("no-cache");
+        assertThat(catalog.get("animalOptions")).hasSize(AppConstants.ANIMAL_EMOJIS.size());
+
+        ResponseEntity<String> versioned = restTemplate.getForEntity("/catalog/" + version, String.class);
+        assertThat(versioned.getHeaders().getCacheControl()).contains("immutable");
+        assertThat(versioned.getBody()).isEqualTo(current.getBody());
+
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch("\"" + version + "\"");
+        ResponseEntity<String> revalidated = restTemplate.exchange("/catalog", HttpMethod.GET, new HttpEntity<>(conditional), String.class);
+        assertThat(revalidated.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        assertThat(restTemplate.getForEntity("/catalog/stale", String.class).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void prometheusEndpointExposesChannelBrokerAndStateMetrics() throws Exception {
+        StompSession session = connect();
+        BlockingQueue<JsonNode> control = subscribe(session, "/topic/device/*/control");
+        session.send("/app/session/register", Map.of("me", "🐻"));
+        awaitFrame(control, frame -> "🐻".equals(frame.path("me").asText()));
+        session.disconnect();
+
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        assertThat(scrape)
+                .contains("executor_queued_tasks{name=\"clientOutboundChannelExecutor\"")
+                .contains("executor_active_threads{name=\"clientInboundChannelExecutor\"")
+                .contains("stomp_channel_queue_wait_seconds_count{channel=\"clientOutbound\"")
+                .contains("stomp_channel_send_seconds_count{channel=\"broker\"")
+                .contains("stomp_broker_fanout_sessions_count{family=\"messages\"")
+                .contains("chat_handler_seconds_count{mapping=\"/message/send\"")
+                .contains("chat_sessions ")
+                .contains("chat_history_size ");
+        assertThat(sampleValue(scrape, "stomp_channel_queue_wait_seconds_count{channel=\"clientInbound\"")).isPositive();
+        assertThat(sampleValue(scrape, "stomp_channel_queue_wait_seconds_count{channel=\"clientOutbound\"")).isPositive();
+    }
+
+    private static double sampleValue(String scrape, String series) {
+        String line = scrape.lines().filter(candidate -> candidate.startsWith(series)).findFirst()
+                .orElseThrow(() -> new AssertionError("No sample for " + series));
+        return Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+    }
+
+    private StompSession connect() throws Exception {
+        return connect(new StompHeaders());
+    }
+
+    private StompSession connect(StompHeaders connectHeaders) throws Exception {
+        stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        stompClient.setMessageConverter(converter);
+        return stompClient.connectAsync("ws://localhost:" + port + "/ws", new WebSocketHttpHeaders(), connectHeaders,
+                new StompSessionHandlerAdapter() {
+                }).get(5, TimeUnit.SECONDS);
+    }
+
+    private JsonNode awaitFrame(BlockingQueue<JsonNode> frames, Predicate<JsonNode> matcher) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            JsonNode frame = frames.poll(100, TimeUnit.MILLISECONDS);
+            if (frame != null && matcher.test(frame)) {
+                return frame;
+            }
+        }
+        throw new AssertionError("No matching frame received");
+    }
+
+    private BlockingQueue<JsonNode> subscribe(StompSession session, String destination) {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                frames.add((JsonNode) payload);
+            }
+        });
+        return frames;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.demo.chat;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmojiCodecTests {
+
+    @Test
+    void mapsTheTablesToOrdinalsAndBack() {
+        for (int i = 0; i < EmojiCodec.ANIMALS; i++) {
+            String copy = new String(AppConstants.ANIMAL_EMOJIS.get(i));
+            assertThat(EmojiCodec.animal(copy)).isEqualTo(i);
+            assertThat(EmojiCodec.animalAt(i)).isSameAs(AppConstants.ANIMAL_EMOJIS.get(i));
+        }
+        for (int i = 0; i < EmojiCodec.FOODS; i++) {
+            assertThat(EmojiCodec.food(new String(AppConstants.FOOD_EMOJIS.get(i)))).isEqualTo(i);
+            assertThat(EmojiCodec.symbol(AppConstants.FOOD_EMOJIS.get(i))).isEqualTo(EmojiCodec.ANIMALS + i);
+        }
+        assertThat(EmojiCodec.symbol(AppConstants.SYSTEM_SENDER)).isEqualTo(AppConstants.WIRE_SYMBOLS.indexOf("SYSTEM"));
+    }
+
+    @Test
+    void rejectsAnythingOutsideItsTable() {
+        assertThat(EmojiCodec.animal(AppConstants.FOOD_EMOJIS.get(0))).isEqualTo(-1);
+        assertThat(EmojiCodec.food(AppConstants.ANIMAL_EMOJIS.get(0))).isEqualTo(-1);
+        assertThat(EmojiCodec.isAnimal(null)).isFalse();
+        assertThat(EmojiCodec.isFood("🍕🍕")).isFalse();
+        assertThat(EmojiCodec.symbol("session-1")).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.demo.chat.cluster;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.example.demo.chat.service.ChatMessageEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterCoordinatorTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private static final ChatMessageEncoder ENCODER = new ChatMessageEncoder(new ObjectMapper());
+
+    private final LoopbackBackplane.Hub hub = new LoopbackBackplane.Hub();
+
+    @Test
+    void replicatesPresenceAndSettingsIncludingToLateJoiners() {
+        ClusterCoordinator a = node("a", new RecordingHandler());
+        a.sessionRegistered("s1", "🐶");
+        a.sendUsChanged("🍕");
+        a.sendMeChanged("🐶", "🍎");
+
+        RecordingHandler lateHandler = new RecordingHandler();
+        ClusterCoordinator b = node("b", lateHandler);
+
+        assertThat(b.remoteUsers()).containsExactly("🐶");
+        assertThat(b.onlineUsers(List.of("🐱"))).containsExactlyElementsOf(
+                AppConstants.ANIMAL_EMOJIS.stream().filter(Set.of("🐶", "🐱")::contains).toList());
+        assertThat(b.sendMe("🐶")).contains("🍎");
+        assertThat(lateHandler.sendUs).containsExactly("🍕");
+        assertThat(lateHandler.sendMe).containsEntry("🐶", "🍎");
+
+        a.sessionRemoved("s1");
+        assertThat(b.remoteUsers()).isEmpty();
+        assertThat(b.hasRemoteSessions()).isFalse();
+    }
+
+    @Test
+    void deliversMessagesOnlyToNodesWithSubscribers() {
+        RecordingHandler handlerB = new RecordingHandler();
+        RecordingHandler handlerC = new RecordingHandler();
+        ClusterCoordinator a = node("a", new RecordingHandler());
+        ClusterCoordinator b = node("b", handlerB);
+        node("c", handlerC);
+        b.subscribed("s1", "sub-1", "/topic/user/🐶/messages");
+
+        EncodedChatMessage message = ENCODER.encode(ChatMessage.userTargeted(IDS, "🐱", "🐶", "🍎", MessageSource.USER_MESSAGE));
+        a.replicate(message, "/topic/user/🐶/messages", "/topic/user/🐱/messages");
+
+        assertThat(handlerB.deliveries).containsExactly(List.of("/topic/user/🐶/messages"));
+        assertThat(handlerC.deliveries).containsExactly(List.of());
+
+        b.sessionRemoved("s1");
+        a.replicate(message, "/topic/user/🐶/messages");
+        assertThat(handlerB.deliveries).last().isEqualTo(List.of());
+    }
+
+    @Test
+    void matchesPatternSubscriptionsAndKeepsDeviceMessagesLocal() {
+        RecordingHandler handlerB = new RecordingHandler();
+        ClusterCoordinator a = node("a", new RecordingHandler());
+        ClusterCoordinator b = node("b", handlerB);
+        b.subscribed("s1", "sub-1", "/topic/device/*/control");
+        b.subscribed("s1", "sub-2", "/topic/device/*/messages");
+
+        a.replicate(ENCODER.encode(ChatMessage.broadcast(IDS, "SYSTEM", "🍕", MessageSource.SYSTEM_BROADCAST)), "/topic/device/x/control");
+        a.replicate(ENCODER.encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "x", "🍕", MessageSource.SYSTEM_DEVICE_SCHEDULE)), "/topic/device/x/messages");
+
+        assertThat(handlerB.deliveries).containsExactly(List.of("/topic/device/x/control"));
+    }
+
+    @Test
+    void everyUserHasExactlyOneOwnerAndOwnershipMovesWhenANodeLeaves() {
+        ClusterCoordinator a = node("a", new RecordingHandler());
+        ClusterCoordinator b = node("b", new RecordingHandler());
+        ClusterCoordinator c = node("c", new RecordingHandler());
+        List<ClusterCoordinator> nodes = List.of(a, b, c);
+
+        assertThat(nodes).filteredOn(ClusterCoordinator::isLeader).containsExactly(a);
+        for (String emoji : AppConstants.ANIMAL_EMOJIS) {
+            assertThat(nodes).filteredOn(node -> node.owns(emoji)).hasSize(1);
+        }
+
+        b.sessionRegistered("s1", "🐶");
+        a.stop();
+
+        assertThat(c.remoteUsers()).containsExactly("🐶");
+        assertThat(List.of(b, c)).filteredOn(ClusterCoordinator::isLeader).containsExactly(b);
+        for (String emoji : AppConstants.ANIMAL_EMOJIS) {
+            assertThat(List.of(b, c)).filteredOn(node -> node.owns(emoji)).hasSize(1);
+        }
+
+        b.stop();
+        assertThat(c.remoteUsers()).isEmpty();
+        assertThat(c.isLeader()).isTrue();
+    }
+
+    private ClusterCoordinator node(String id, RecordingHandler handler) {
+        ClusterCoordinator coordinator = new ClusterCoordinator(hub.node(id));
+        coordinator.attach(handler);
+        coordinator.start();
+        return coordinator;
+    }
+
+    private static final class RecordingHandler implements ClusterEventHandler {
+
+        private final List<String> sendUs = new ArrayList<>();
+        private final Map<String, String> sendMe = new ConcurrentHashMap<>();
+        private final List<List<String>> deliveries = new ArrayList<>();
+
+        @Override
+        public void onPresenceChanged(Set<String> remoteUsers) {
+        }
+
+        @Override
+        public void onSendUsChanged(String value) {
+            sendUs.add(value);
+        }
+
+        @Override
+        public void onSendMeChanged(String userEmoji, String value) {
+            sendMe.put(userEmoji, value);
+        }
+
+        @Override
+        public void onMessage(EncodedChatMessage message, List<String> deliverTo) {
+            deliveries.add(deliverTo);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.chat.dto;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.example.demo.chat.service.ChatMessageEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactChatMessageWriterTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writesTableIndexesOrdinalsAndEpochMillis() throws Exception {
+        ChatMessage base = ChatMessage.userTargeted(IDS, "🐱", "🐶", "🍕", MessageSource.USER_MESSAGE);
+        ChatMessage message = new ChatMessage(base.id(), Instant.ofEpochMilli(1_700_000_000_123L), base.sender(),
+                base.audience(), base.source(), base.content(), base.targetUser(), base.targetSession());
+        EncodedChatMessage encoded = new ChatMessageEncoder(objectMapper).encode(message, 42);
+
+        JsonNode compact = objectMapper.readTree(encoded.compactPayload());
+
+        assertThat(compact.toString()).isEqualTo("[42,1700000000123,1,0,1,0,13]");
+        assertThat(AppConstants.WIRE_SYMBOLS.get(13)).isEqualTo("🍕");
+        assertThat(encoded.compactPayload()).hasSizeLessThan(encoded.frame().getPayload().length / 3);
+    }
+
+    @Test
+    void fallsBackToJsonStringsOutsideTheTables() throws Exception {
+        ChatMessage message = ChatMessage.deviceTargeted(IDS, "SYSTEM", "session-\"1\"", "✨", MessageSource.SYSTEM_DEVICE_SCHEDULE);
+        EncodedChatMessage encoded = new ChatMessageEncoder(objectMapper).encode(message);
+
+        JsonNode compact = objectMapper.readTree(encoded.compactPayload());
+
+        assertThat(compact.get(0).isTextual()).isTrue();
+        assertThat(compact.get(0).asText()).isEqualTo(Long.toString(message.id()));
+        assertThat(compact.get(2).asInt()).isEqualTo(AppConstants.WIRE_SYMBOLS.indexOf("SYSTEM"));
+        assertThat(compact.get(3).asText()).isEqualTo("session-\"1\"");
+        assertThat(compact.get(6).asText()).isEqualTo("✨");
+    }
+}
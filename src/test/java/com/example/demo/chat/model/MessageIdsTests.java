@@ -0,0 +1,64 @@
+package com.example.demo.chat.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageIdsTests {
+
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    void idsIncreaseAndCarryTheirMillisecondAndNode() {
+        MessageIds ids = new MessageIds(5);
+        long first = ids.next(NOW);
+        long second = ids.next(NOW);
+        long later = ids.next(NOW + 3);
+
+        assertThat(second).isGreaterThan(first);
+        assertThat(later).isGreaterThan(second);
+        assertThat(MessageIds.epochMillisOf(first)).isEqualTo(NOW);
+        assertThat(MessageIds.epochMillisOf(later)).isEqualTo(NOW + 3);
+        assertThat(first >>> MessageIds.COUNTER_BITS & ((1 << MessageIds.NODE_BITS) - 1)).isEqualTo(5);
+        assertThat(new MessageIds(6).next(NOW)).isNotEqualTo(first);
+    }
+
+    @Test
+    void borrowsFromTheNextMillisecondWhenTheCounterRunsOutOrTheClockStepsBack() {
+        MessageIds ids = new MessageIds(0);
+        List<Long> issued = new ArrayList<>();
+        for (int i = 0; i < (1 << MessageIds.COUNTER_BITS) + 10; i++) {
+            issued.add(ids.next(NOW));
+        }
+        issued.add(ids.next(NOW - 1_000));
+
+        assertThat(issued).isSorted().doesNotHaveDuplicates();
+        assertThat(MessageIds.epochMillisOf(issued.get(issued.size() - 1))).isEqualTo(NOW + 1);
+    }
+
+    @Test
+    void concurrentCallersNeverShareAnId() {
+        MessageIds ids = new MessageIds(1);
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 8).parallel().forEach(thread -> {
+            for (int i = 0; i < 10_000; i++) {
+                seen.add(ids.next(System.currentTimeMillis()));
+            }
+        });
+        assertThat(seen).hasSize(80_000);
+    }
+
+    @Test
+    void aNamedNodeAlwaysGetsTheSameNodeBits() {
+        int node = MessageIds.nodeOf("chat-1");
+
+        assertThat(node).isEqualTo(MessageIds.nodeOf("chat-1")).isBetween(0, (1 << MessageIds.NODE_BITS) - 1);
+        assertThat(new MessageIds(node).next(NOW) >>> MessageIds.COUNTER_BITS & ((1 << MessageIds.NODE_BITS) - 1)).isEqualTo(node);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import com.example.demo.chat.cluster.ClusterCoordinator;
+import com.example.demo.chat.model.MessageIds;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdleSessionReaperTests {
+
+    private static final long TIMEOUT_MS = 1_000;
+
+    private final RealtimeStateService stateService = new RealtimeStateService(new MessageHistory(200, 50, 20, 50_000));
+    private final ChatService chatService = new ChatService(stateService, new SimpMessagingTemplate((message, timeout) -> true),
+            new ChatMessageEncoder(new ObjectMapper()), new ChatCatalog(new ObjectMapper()), ClusterCoordinator.standalone(),
+            new MessageIds(0), 11_000, 5_000, 12_000, 5_000, 100, 30_000);
+    private final List<Message<?>> closed = new ArrayList<>();
+    private final MessageChannel outbound = (message, timeout) -> closed.add(message);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void evictsOnlyTheSessionThatWentSilent() {
+        long start = System.currentTimeMillis();
+        IdleSessionReaper reaper = new IdleSessionReaper(chatService, outbound, meterRegistry, Duration.ofMillis(TIMEOUT_MS), 100);
+        String animal = AppConstants.ANIMAL_EMOJIS.get(0);
+        stateService.assignUser("silent", animal);
+        stateService.assignUser("chatty", animal);
+        reaper.touch("silent", start);
+        reaper.touch("chatty", start);
+
+        for (long now = start; now <= start + 2 * TIMEOUT_MS; now += 100) {
+            reaper.touch("chatty", now);
+            reaper.reap(now);
+        }
+
+        assertThat(stateService.findSession("silent")).isEmpty();
+        assertThat(stateService.findSession("chatty")).isPresent();
+        assertThat(stateService.isOnline(animal)).isTrue();
+        assertThat(closed).singleElement().satisfies(message -> {
+            assertThat(SimpMessageHeaderAccessor.getMessageType(message.getHeaders())).isEqualTo(SimpMessageType.DISCONNECT_ACK);
+            assertThat(SimpMessageHeaderAccessor.getSessionId(message.getHeaders())).isEqualTo("silent");
+        });
+        assertThat(meterRegistry.get("chat.sessions.reaped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void forgottenSessionsAreNeverEvicted() {
+        long start = System.currentTimeMillis();
+        IdleSessionReaper reaper = new IdleSessionReaper(chatService, outbound, meterRegistry, Duration.ofMillis(TIMEOUT_MS), 100);
+        reaper.touch("gone", start);
+        reaper.forget("gone");
+
+        for (long now = start; now <= start + 2 * TIMEOUT_MS; now += 100) {
+            reaper.reap(now);
+        }
+
+        assertThat(closed).isEmpty();
+        assertThat(meterRegistry.get("chat.sessions.tracked").gauge().value()).isZero();
+    }
+}
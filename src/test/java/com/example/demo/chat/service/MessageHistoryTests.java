@@ -0,0 +1,183 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageHistoryTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private static final Function<EncodedChatMessage, String> CONTENT = encoded -> encoded.message().content();
+
+    @Test
+    void privateMessagesSurviveBroadcastFloods() {
+        MessageHistory history = new MessageHistory(5, 5, 5, 100);
+        history.append(encode(ChatMessage.userTargeted(IDS, "🐱", "🐶", "🍎", MessageSource.USER_MESSAGE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s1", "🍌", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        for (int i = 0; i < 50; i++) {
+            history.append(encode(ChatMessage.broadcast(IDS, "SYSTEM", "🍇", MessageSource.SYSTEM_BROADCAST)));
+        }
+
+        List<EncodedChatMessage> forTarget = history.recentFor("🐶", "s1", 20);
+        List<EncodedChatMessage> forSender = history.recentFor("🐱", "s2", 20);
+
+        assertThat(forTarget).hasSize(7);
+        assertThat(forTarget.subList(0, 2)).extracting(CONTENT).containsExactly("🍎", "🍌");
+        assertThat(forSender).hasSize(6).first().extracting(CONTENT).isEqualTo("🍎");
+    }
+
+    @Test
+    void mergesWindowsInAppendOrderAndHonoursLimit() {
+        MessageHistory history = new MessageHistory(10, 10, 10, 100);
+        history.append(encode(ChatMessage.broadcast(IDS, "🐱", "1", MessageSource.USER_MESSAGE)));
+        history.append(encode(ChatMessage.userTargeted(IDS, "SYSTEM", "🐶", "2", MessageSource.SYSTEM_USER_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s1", "3", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.userTargeted(IDS, "SYSTEM", "🐭", "x", MessageSource.SYSTEM_USER_SCHEDULE)));
+        history.append(encode(ChatMessage.broadcast(IDS, "🐱", "4", MessageSource.USER_MESSAGE)));
+
+        assertThat(history.recentFor("🐶", "s1", 3)).extracting(CONTENT).containsExactly("2", "3", "4");
+    }
+
+    @Test
+    void evictsStalestSessionWindowWhenOverBudget() {
+        MessageHistory history = new MessageHistory(10, 10, 10, 20);
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s1", "old", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s2", "mid", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s3", "new", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+
+        assertThat(history.recentFor(null, "s1", 10)).isEmpty();
+        assertThat(history.recentFor(null, "s2", 10)).extracting(CONTENT).containsExactly("mid");
+        assertThat(history.recentFor(null, "s3", 10)).extracting(CONTENT).containsExactly("new");
+    }
+
+    @Test
+    void evictsWindowsOfGoneSessionsBeforeConnectedOnesAndCountsTheRest() {
+        MessageHistory history = new MessageHistory(10, 10, 10, 20);
+        history.openSession("s1");
+        history.openSession("s3");
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s1", "connected", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "gone", "late", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s3", "new", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+
+        assertThat(history.recentFor(null, "gone", 10)).isEmpty();
+        assertThat(history.recentFor(null, "s1", 10)).extracting(CONTENT).containsExactly("connected");
+        assertThat(history.evictedConnectedWindows()).isZero();
+
+        history.openSession("s4");
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s3", "written again", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s4", "newest", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+
+        assertThat(history.recentFor(null, "s1", 10)).isEmpty();
+        assertThat(history.recentFor(null, "s3", 10)).extracting(CONTENT).containsExactly("new", "written again");
+        assertThat(history.evictedConnectedWindows()).isEqualTo(1);
+    }
+
+    @Test
+    void restoresFromJournalAndResumesSequencing() {
+        List<ChatMessage> journaled = List.of(
+                ChatMessage.broadcast(IDS, "🐱", "1", MessageSource.USER_MESSAGE),
+                ChatMessage.deviceTargeted(IDS, "SYSTEM", "old-session", "2", MessageSource.SYSTEM_DEVICE_SCHEDULE),
+                ChatMessage.userTargeted(IDS, "SYSTEM", "🐶", "3", MessageSource.SYSTEM_USER_SCHEDULE));
+        List<Long> recorded = new ArrayList<>();
+        MessageJournal journal = new MessageJournal() {
+            @Override
+            public void record(long sequence, ChatMessage message) {
+                recorded.add(sequence);
+            }
+
+            @Override
+            public long lastSequence() {
+                return 41;
+            }
+
+            @Override
+            public void replay(int limit, EntryConsumer consumer) {
+                for (int i = 0; i < journaled.size(); i++) {
+                    consumer.accept(39 + i, journaled.get(i));
+                }
+            }
+        };
+
+        MessageHistory history = new MessageHistory(10, 10, 10, 100, journal, new ChatMessageEncoder(new ObjectMapper()), 100);
+
+        assertThat(history.lastSequence()).isEqualTo(41);
+        assertThat(history.recentFor("🐶", "old-session", 10)).extracting(CONTENT).containsExactly("1", "3");
+        assertThat(history.append(encode(ChatMessage.broadcast(IDS, "🐱", "4", MessageSource.USER_MESSAGE)))).isEqualTo(42);
+        assertThat(recorded).containsExactly(42L);
+    }
+
+    @Test
+    void returnsMessagesSinceASequenceUntilTheWindowsWrap() {
+        MessageHistory history = new MessageHistory(3, 3, 3, 100);
+        long seen = history.append(encode(ChatMessage.broadcast(IDS, "🐱", "1", MessageSource.USER_MESSAGE)));
+        history.append(encode(ChatMessage.userTargeted(IDS, "SYSTEM", "🐶", "2", MessageSource.SYSTEM_USER_SCHEDULE)));
+        history.append(encode(ChatMessage.userTargeted(IDS, "SYSTEM", "🐭", "x", MessageSource.SYSTEM_USER_SCHEDULE)));
+        history.append(encode(ChatMessage.deviceTargeted(IDS, "SYSTEM", "s1", "y", MessageSource.SYSTEM_DEVICE_SCHEDULE)));
+        history.append(encode(ChatMessage.broadcast(IDS, "🐱", "3", MessageSource.USER_MESSAGE)));
+
+        assertThat(history.since("🐶", seen, 10).orElseThrow()).extracting(CONTENT).containsExactly("2", "3");
+        assertThat(history.since("🐶", seen, 1)).isEmpty();
+        assertThat(history.since("🐶", history.lastSequence() + 1, 10)).isEmpty();
+
+        for (int i = 0; i < 3; i++) {
+            history.append(encode(ChatMessage.broadcast(IDS, "🐱", "flood", MessageSource.USER_MESSAGE)));
+        }
+        assertThat(history.since("🐶", seen, 10)).isEmpty();
+        assertThat(history.since("🐶", history.lastSequence() - 1, 10).orElseThrow()).hasSize(1);
+    }
+
+    @Test
+    void aWindowWrappingDuringAResumeNeverYieldsADeltaWithAHole() throws Exception {
+        MessageHistory history = new MessageHistory(8, 8, 8, 100);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        // A single writer gets consecutive sequences from 0, so it can put each one in the content.
+        Thread writer = new Thread(() -> {
+            for (long next = 0; writing.get(); next++) {
+                history.append(encode(ChatMessage.broadcast(IDS, "🐱", Long.toString(next), MessageSource.USER_MESSAGE)));
+                if (next % 4 == 0) {
+                    // leaves the reader a chance on a single CPU
+                    Thread.yield();
+                }
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 20_000; i++) {
+                assertContiguousIfComplete(history, history.lastSequence() - 6);
+            }
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+        // how many resumes raced the writer and still succeeded depends on scheduling; a quiet window always resumes
+        assertThat(assertContiguousIfComplete(history, history.lastSequence() - 6)).isTrue();
+    }
+
+    private static boolean assertContiguousIfComplete(MessageHistory history, long seen) {
+        Optional<List<EncodedChatMessage>> delta = history.since("🐶", seen, 100);
+        // Every message is a broadcast, so a complete delta is a contiguous run right after seen.
+        delta.ifPresent(messages -> {
+            List<Long> sequences = messages.stream().map(CONTENT).map(Long::parseLong).toList();
+            for (int k = 0; k < sequences.size(); k++) {
+                assertThat(sequences.get(k)).isEqualTo(seen + 1 + k);
+            }
+        });
+        return delta.isPresent();
+    }
+
+    private static EncodedChatMessage encode(ChatMessage message) {
+        return new EncodedChatMessage(message, "{}");
+    }
+}
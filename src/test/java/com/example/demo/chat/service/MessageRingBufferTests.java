@@ -0,0 +1,112 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageRingBufferTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    @Test
+    void keepsOnlyTheNewestCapacityMessagesInOrder() {
+        MessageRingBuffer buffer = new MessageRingBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.append(message(i));
+        }
+
+        List<SequencedMessage> latest = buffer.latest(10);
+
+        assertThat(latest).extracting(SequencedMessage::sequence).containsExactly(2L, 3L, 4L);
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(buffer.newestSequence()).isEqualTo(4);
+    }
+
+    @Test
+    void limitsFromTheNewestEnd() {
+        MessageRingBuffer buffer = new MessageRingBuffer(10);
+        for (int i = 0; i < 10; i++) {
+            buffer.append(message(i));
+        }
+
+        assertThat(buffer.latest(2)).extracting(SequencedMessage::sequence).containsExactly(8L, 9L);
+    }
+
+    @Test
+    void concurrentWritersNeverProduceDuplicates() throws InterruptedException {
+        int writers = 8;
+        int perWriter = 5_000;
+        MessageRingBuffer buffer = new MessageRingBuffer(64);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    buffer.append(message((long) writer * perWriter + i));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(buffer.latest(64)).hasSize(64).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void newestSequenceNeverMovesBackwards() {
+        MessageRingBuffer buffer = new MessageRingBuffer(4);
+        buffer.append(message(5));
+        buffer.append(message(3));
+
+        assertThat(buffer.newestSequence()).isEqualTo(5);
+    }
+
+    @Test
+    void everyMessageMissingFromTheWindowIsCoveredByTheEvictedSequence() throws InterruptedException {
+        int writers = 8;
+        int perWriter = 5_000;
+        MessageRingBuffer buffer = new MessageRingBuffer(4);
+        AtomicLong sequences = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < writers; w++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perWriter; i++) {
+                    buffer.append(message(sequences.getAndIncrement()));
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        Set<Long> retained = buffer.latest(4).stream().map(SequencedMessage::sequence).collect(Collectors.toSet());
+        assertThat(LongStream.range(buffer.evictedSequence() + 1, sequences.get()).boxed()).allMatch(retained::contains);
+        assertThat(buffer.newestSequence()).isEqualTo(sequences.get() - 1);
+    }
+
+    private static SequencedMessage message(long sequence) {
+        ChatMessage message = ChatMessage.broadcast(IDS, "SYSTEM", String.valueOf(sequence), MessageSource.SYSTEM_BROADCAST);
+        return new SequencedMessage(sequence, new EncodedChatMessage(message, "{}"));
+    }
+}
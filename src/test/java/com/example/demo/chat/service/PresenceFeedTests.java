@@ -0,0 +1,41 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.dto.PresenceDeltaPayload;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PresenceFeedTests {
+
+    @Test
+    void coalescesChangesIntoOneVersionedDeltaPerFlush() {
+        PresenceFeed feed = new PresenceFeed();
+        feed.markDirty();
+        assertThat(feed.flush(() -> List.of("🐶", "🐱"))).get()
+                .isEqualTo(new PresenceDeltaPayload(1, List.of("🐶", "🐱"), List.of()));
+
+        feed.markDirty();
+        feed.markDirty();
+        feed.markDirty();
+        PresenceDeltaPayload delta = feed.flush(() -> List.of("🐱", "🐭")).orElseThrow();
+
+        assertThat(delta).isEqualTo(new PresenceDeltaPayload(2, List.of("🐭"), List.of("🐶")));
+        assertThat(feed.full().users()).containsExactly("🐱", "🐭");
+        assertThat(feed.full().version()).isEqualTo(2);
+    }
+
+    @Test
+    void publishesNothingWhenCleanOrWhenChangesCancelOut() {
+        PresenceFeed feed = new PresenceFeed();
+        assertThat(feed.flush(() -> List.of("🐶"))).isEmpty();
+
+        feed.markDirty();
+        feed.flush(() -> List.of("🐶"));
+        feed.markDirty();
+
+        assertThat(feed.flush(() -> List.of("🐶"))).isEmpty();
+        assertThat(feed.version()).isEqualTo(1);
+    }
+}
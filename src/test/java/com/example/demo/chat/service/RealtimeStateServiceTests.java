@@ -0,0 +1,150 @@
+package com.example.demo.chat.service;
+
+import com.example.demo.chat.AppConstants;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RealtimeStateServiceTests {
+
+    @Test
+    void sessionOnAnotherStripeIsNotBlockedByAHeldSession() throws Exception {
+        StripedLocks sessionLocks = new StripedLocks(64);
+        RealtimeStateService service = new RealtimeStateService(newHistory(), sessionLocks, new StripedLocks(64));
+        String busy = "busy";
+        String other = "other";
+        assertThat(sessionLocks.stripe(busy)).isNotSameAs(sessionLocks.stripe(other));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ReentrantLock busyLock = sessionLocks.stripe(busy);
+        busyLock.lock();
+        try {
+            Future<?> blocked = executor.submit(() -> service.updateSendHere(busy, AppConstants.FOOD_EMOJIS.get(3)));
+            Future<?> free = executor.submit(() -> service.updateSendHere(other, AppConstants.FOOD_EMOJIS.get(3)));
+
+            free.get(5, TimeUnit.SECONDS);
+            Thread.sleep(100);
+            assertThat(blocked).isNotDone();
+        } finally {
+            busyLock.unlock();
+            executor.shutdown();
+        }
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.findSession(busy)).isPresent();
+    }
+
+    @Test
+    void concurrentChurnKeepsUserMembershipConsistent() throws InterruptedException {
+        RealtimeStateService service = new RealtimeStateService(newHistory());
+        int threads = 16;
+        int rounds = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String sessionId = "session-" + t;
+            int offset = t;
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < rounds; i++) {
+                    List<String> animals = AppConstants.ANIMAL_EMOJIS;
+                    service.assignUser(sessionId, animals.get((offset + i) % animals.size()));
+                    service.assignUser(sessionId, animals.get((offset + i + 1) % animals.size()));
+                    if (i % 3 == 0) {
+                        service.removeSession(sessionId);
+                    }
+                }
+            }, executor));
+        }
+        start.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+
+        for (RealtimeStateService.UserState user : service.userStates()) {
+            assertThat(user.sessionIds()).isNotEmpty();
+            for (String sessionId : user.sessionIds()) {
+                assertThat(service.findSession(sessionId)).hasValueSatisfying(session ->
+                        assertThat(session.userEmoji()).isEqualTo(user.emoji()));
+            }
+        }
+        for (RealtimeStateService.SessionState session : service.sessionStates()) {
+            assertThat(service.sessionsForUser(session.userEmoji())).contains(session.sessionId());
+        }
+    }
+
+    @Test
+    void onlineUsersFollowJoinsAndLeavesInCatalogOrder() {
+        RealtimeStateService service = new RealtimeStateService(newHistory());
+        List<String> animals = AppConstants.ANIMAL_EMOJIS;
+        service.assignUser("s1", animals.get(5));
+        service.assignUser("s2", animals.get(1));
+        service.assignUser("s3", animals.get(5));
+        service.assignUser("s4", animals.get(3));
+        List<String> before = service.onlineUsers();
+
+        service.removeSession("s1");
+        assertThat(service.onlineUsers()).isSameAs(before).containsExactly(animals.get(1), animals.get(3), animals.get(5));
+        service.removeSession("s3");
+        service.assignUser("s2", animals.get(0));
+
+        assertThat(service.onlineUsers()).containsExactly(animals.get(0), animals.get(3));
+        assertThat(before).containsExactly(animals.get(1), animals.get(3), animals.get(5));
+    }
+
+    @Test
+    void keepsTheTableInstancesRatherThanWireStrings() {
+        RealtimeStateService service = new RealtimeStateService(newHistory());
+        String animal = AppConstants.ANIMAL_EMOJIS.get(2);
+        String food = AppConstants.FOOD_EMOJIS.get(4);
+
+        service.assignUser("s1", new String(animal));
+        service.updateSendMe(new String(animal), new String(food));
+        service.updateSendHere("s1", new String(food));
+
+        assertThat(service.findSession("s1").orElseThrow().userEmoji()).isSameAs(animal);
+        assertThat(service.findUser(animal).orElseThrow().sendMe()).isSameAs(food);
+        assertThat(service.findSession("s1").orElseThrow().sendHere()).isSameAs(food);
+        assertThat(service.updateSendUs(new String(food))).isSameAs(food);
+        assertThat(service.isOnline(animal)).isTrue();
+        assertThat(service.userCount()).isEqualTo(1);
+    }
+
+    @Test
+    void updatingSendMeNeverBringsAUserOnline() {
+        RealtimeStateService service = new RealtimeStateService(newHistory());
+        String animal = AppConstants.ANIMAL_EMOJIS.get(1);
+        String food = AppConstants.FOOD_EMOJIS.get(3);
+        String version = service.stateVersion();
+
+        assertThat(service.updateSendMe(animal, food)).isEmpty();
+        assertThat(service.isOnline(animal)).isFalse();
+        assertThat(service.findUser(animal)).isEmpty();
+        assertThat(service.onlineUsers()).isEmpty();
+        assertThat(service.stateVersion()).isEqualTo(version);
+
+        service.assignUser("s1", animal);
+        assertThat(service.updateSendMe(animal, food)).get().extracting(RealtimeStateService.UserState::sendMe).isSameAs(food);
+        service.removeSession("s1");
+        assertThat(service.updateSendMe(animal, food)).isEmpty();
+        assertThat(service.isOnline(animal)).isFalse();
+    }
+
+    private static MessageHistory newHistory() {
+        return new MessageHistory(200, 50, 20, 50_000);
+    }
+}
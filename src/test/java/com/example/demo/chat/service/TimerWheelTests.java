@@ -0,0 +1,75 @@
+package com.example.demo.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimerWheelTests {
+
+    @Test
+    void firesEachKeyOncePerPeriodSpreadAcrossTicks() {
+        TimerWheel<Integer> wheel = new TimerWheel<>(1_000, 100, 0);
+        for (int i = 0; i < 1_000; i++) {
+            wheel.add(i);
+        }
+
+        Map<Integer, Integer> firings = new HashMap<>();
+        List<Integer> perTick = new ArrayList<>();
+        for (long now = 0; now < 1_000; now += 100) {
+            perTick.add(wheel.advance(now, key -> firings.merge(key, 1, Integer::sum)));
+        }
+
+        assertThat(firings).hasSize(1_000);
+        assertThat(firings.values()).containsOnly(1);
+        assertThat(perTick).hasSize(10).allSatisfy(count -> assertThat(count).isBetween(40, 160));
+    }
+
+    @Test
+    void removedKeysStopFiringAndInitialDelayIsRespected() {
+        TimerWheel<String> wheel = new TimerWheel<>(500, 100, 1_000);
+        wheel.add("a");
+        wheel.add("b");
+        wheel.add("b");
+        wheel.remove("a");
+
+        List<String> fired = new ArrayList<>();
+        assertThat(wheel.advance(999, fired::add)).isZero();
+        wheel.advance(1_400, fired::add);
+
+        assertThat(fired).containsExactly("b");
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.contains("a")).isFalse();
+    }
+
+    @Test
+    void catchesUpAtMostOneRevolutionAfterAStall() {
+        TimerWheel<String> wheel = new TimerWheel<>(500, 100, 0);
+        wheel.add("a");
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(10_000, fired::add);
+
+        assertThat(fired).containsExactly("a");
+    }
+
+    @Test
+    void anOverlappingAdvanceFiresNothingAndTheNextOneCatchesUp() {
+        TimerWheel<String> wheel = new TimerWheel<>(500, 100, 0);
+        wheel.add("a");
+        wheel.add("b");
+
+        List<Integer> nested = new ArrayList<>();
+        int fired = wheel.advance(499, key -> nested.add(wheel.advance(499, ignored -> {
+        })));
+
+        assertThat(fired).isEqualTo(2);
+        assertThat(nested).containsExactly(0, 0);
+        assertThat(wheel.advance(999, key -> {
+        })).isEqualTo(2);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMessageCodecTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    @Test
+    void roundTripsMessages() {
+        ChatMessage message = ChatMessage.userTargeted(IDS, "🐱", "🐶", "🍕", MessageSource.USER_MESSAGE);
+
+        assertThat(ChatMessageCodec.decode(ChatMessageCodec.encode(message))).isEqualTo(message);
+    }
+}
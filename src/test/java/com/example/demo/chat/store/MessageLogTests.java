@@ -0,0 +1,130 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageLogTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversRecordsAfterReopenAndReadsBySequenceAndTime() {
+        try (MessageLog log = open(1 << 16, 4)) {
+            for (int i = 0; i < 200; i++) {
+                log.append(i, message(i));
+            }
+            log.flush();
+        }
+
+        try (MessageLog log = open(1 << 16, 4)) {
+            assertThat(log.lastSequence()).isEqualTo(199);
+            assertThat(sequencesFrom(log, 150)).hasSize(50).first().isEqualTo(150L);
+            List<ChatMessage> since = new ArrayList<>();
+            log.readSince(message(180).timestamp().toEpochMilli(), (sequence, message) -> since.add(message));
+            assertThat(since).extracting(ChatMessage::content).first().isEqualTo("180");
+            assertThat(since).hasSize(20);
+            ChatMessage restored = latest(log, 1).get(0);
+            assertThat(restored).isEqualTo(message(199));
+        }
+    }
+
+    @Test
+    void truncatesATornTailAndKeepsAppending() throws Exception {
+        try (MessageLog log = open(1 << 16, 4)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(i, message(i));
+            }
+            log.flush();
+        }
+        Path segment = segments().get(0);
+        long segmentSize = Files.size(segment);
+        // corrupt the payload of the last record: its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            long position = 0;
+            for (int i = 0; i < 9; i++) {
+                file.seek(position);
+                position += LogSegment.HEADER_BYTES + file.readInt();
+            }
+            file.seek(position + LogSegment.HEADER_BYTES);
+            file.writeByte(0x7f);
+        }
+
+        try (MessageLog log = open(1 << 16, 4)) {
+            assertThat(log.lastSequence()).isEqualTo(8);
+            log.append(9, message(42));
+            log.flush();
+        }
+        try (MessageLog log = open(1 << 16, 4)) {
+            assertThat(latest(log, 2)).extracting(ChatMessage::content).containsExactly("8", "42");
+            assertThat(Files.size(segment)).isEqualTo(segmentSize);
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndDropsTheOldestBeyondRetention() throws Exception {
+        try (MessageLog log = open(4096, 3)) {
+            for (int i = 0; i < 500; i++) {
+                log.append(i, message(i));
+            }
+            assertThat(log.segmentCount()).isEqualTo(3);
+            assertThat(segments()).hasSize(3);
+            List<Long> retained = sequencesFrom(log, 0);
+            assertThat(retained.get(retained.size() - 1)).isEqualTo(499L);
+            assertThat(retained).isSorted().doesNotHaveDuplicates();
+            assertThat(retained.get(0)).isGreaterThan(0L);
+            assertThat(latest(log, 300)).hasSize(retained.size() < 300 ? retained.size() : 300);
+        }
+    }
+
+    private MessageLog open(int segmentBytes, int maxSegments) {
+        return new MessageLog(directory, segmentBytes, maxSegments, Duration.ZERO, CLOCK);
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static List<Long> sequencesFrom(MessageLog log, long from) {
+        List<Long> sequences = new ArrayList<>();
+        log.readFrom(from, (sequence, message) -> sequences.add(sequence));
+        return sequences;
+    }
+
+    private static List<ChatMessage> latest(MessageLog log, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        log.readLatest(limit, (sequence, message) -> messages.add(message));
+        return messages;
+    }
+
+    private static ChatMessage message(int i) {
+        ChatMessage base = i % 2 == 0
+                ? ChatMessage.broadcast(IDS, "🐱", Integer.toString(i), MessageSource.USER_MESSAGE)
+                : ChatMessage.userTargeted(IDS, "SYSTEM", "🐶", Integer.toString(i), MessageSource.SYSTEM_USER_SCHEDULE);
+        Instant timestamp = CLOCK.instant().plusSeconds(i);
+        return new ChatMessage(i, timestamp, base.sender(), base.audience(), base.source(), base.content(),
+                base.targetUser(), base.targetSession());
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.chat.store;
+
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageStoreTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesConcurrentlyRecordedMessagesInSequenceOrderWithGroupedFlushes() throws Exception {
+        AtomicLong sequence = new AtomicLong(-1);
+        MessageStore store = new MessageStore(directory, 1 << 20, 4, Duration.ZERO, 1024, Duration.ofMillis(5));
+        store.start();
+        ExecutorService publishers = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            publishers.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    store.record(sequence.incrementAndGet(), ChatMessage.broadcast(IDS, "🐱", "🍕", MessageSource.USER_MESSAGE));
+                }
+            });
+        }
+        publishers.shutdown();
+        assertThat(publishers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        store.close();
+
+        assertThat(store.writtenCount()).isEqualTo(2000);
+        assertThat(store.flushCount()).isLessThan(2000);
+
+        MessageStore reopened = new MessageStore(directory, 1 << 20, 4, Duration.ZERO, 1024, Duration.ofMillis(5));
+        List<Long> sequences = new ArrayList<>();
+        reopened.readFrom(0, (seq, message) -> sequences.add(seq));
+        assertThat(reopened.lastSequence()).isEqualTo(1999);
+        assertThat(sequences).hasSize(2000).isSorted();
+        reopened.close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChannelMetricsInterceptorTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void nestedSendsOnOneThreadKeepTheirOwnStartTimes() {
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+        channel.addInterceptor(new ChannelMetricsInterceptor("broker", meterRegistry));
+        channel.subscribe(message -> {
+            if ("outer".equals(message.getPayload())) {
+                sleep(50);
+                channel.send(message("inner"));
+            }
+        });
+
+        channel.send(message("outer"));
+
+        Timer send = meterRegistry.get("stomp.channel.send").timer();
+        Timer handle = meterRegistry.get("stomp.channel.handle").timer();
+        assertThat(send.count()).isEqualTo(2);
+        assertThat(send.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        assertThat(handle.count()).isEqualTo(2);
+        assertThat(handle.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+        // a synchronous channel has no queue to wait in
+        assertThat(meterRegistry.get("stomp.channel.queue.wait").timer().count()).isZero();
+    }
+
+    @Test
+    void queueWaitIsMeasuredFromTheSendOnExecutorChannels() {
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(Runnable::run);
+        channel.addInterceptor(new ChannelMetricsInterceptor("clientInbound", meterRegistry));
+        channel.subscribe(message -> {
+        });
+
+        channel.send(message("frame"));
+
+        assertThat(meterRegistry.get("stomp.channel.queue.wait").timer().count()).isEqualTo(1);
+    }
+
+    private static Message<String> message(String payload) {
+        return MessageBuilder.withPayload(payload).build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
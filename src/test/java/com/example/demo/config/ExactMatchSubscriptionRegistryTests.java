@@ -0,0 +1,89 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MultiValueMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExactMatchSubscriptionRegistryTests {
+
+    private final ExactMatchSubscriptionRegistry registry = new ExactMatchSubscriptionRegistry();
+
+    @Test
+    void resolvesExactAndPatternSubscriptionsTogether() {
+        registry.registerSubscription(subscribe("s1", "a", "/topic/device/s1/messages"));
+        registry.registerSubscription(subscribe("s2", "b", "/topic/device/*/messages"));
+        registry.registerSubscription(subscribe("s3", "c", "/topic/messages"));
+
+        assertThat(registry.findSubscriptions(message("/topic/device/s1/messages")))
+                .containsOnlyKeys("s1", "s2");
+        assertThat(registry.findSubscriptions(message("/topic/messages")))
+                .containsOnlyKeys("s3");
+    }
+
+    @Test
+    void unsubscribeAndDisconnectRemoveSubscriptions() {
+        registry.registerSubscription(subscribe("s1", "a", "/topic/messages"));
+        registry.registerSubscription(subscribe("s1", "b", "/topic/online"));
+        registry.registerSubscription(subscribe("s1", "c", "/topic/*"));
+        registry.registerSubscription(subscribe("s2", "a", "/topic/messages"));
+
+        registry.unregisterSubscription(unsubscribe("s2", "a"));
+        assertThat(registry.findSubscriptions(message("/topic/messages")).get("s1")).containsExactlyInAnyOrder("a", "c");
+        assertThat(registry.findSubscriptions(message("/topic/messages"))).doesNotContainKey("s2");
+
+        registry.unregisterAllSubscriptions("s1");
+        assertThat(registry.findSubscriptions(message("/topic/messages"))).isEmpty();
+        assertThat(registry.findSubscriptions(message("/topic/online"))).isEmpty();
+    }
+
+    @Test
+    void aReusedSubscriptionIdKeepsItsFirstDestination() {
+        registry.registerSubscription(subscribe("s1", "a", "/topic/messages"));
+        registry.registerSubscription(subscribe("s1", "a", "/topic/online"));
+
+        assertThat(registry.findSubscriptions(message("/topic/messages"))).containsOnlyKeys("s1");
+        assertThat(registry.findSubscriptions(message("/topic/online"))).isEmpty();
+
+        registry.unregisterSubscription(unsubscribe("s1", "a"));
+        assertThat(registry.findSubscriptions(message("/topic/messages"))).isEmpty();
+        assertThat(registry.findSubscriptions(message("/topic/online"))).isEmpty();
+    }
+
+    @Test
+    void foundSubscriptionsAreASnapshot() {
+        registry.registerSubscription(subscribe("s1", "a", "/topic/messages"));
+        MultiValueMap<String, String> found = registry.findSubscriptions(message("/topic/messages"));
+
+        registry.registerSubscription(subscribe("s2", "a", "/topic/messages"));
+        registry.unregisterAllSubscriptions("s1");
+
+        assertThat(found).containsOnlyKeys("s1");
+        assertThat(registry.findSubscriptions(message("/topic/messages"))).containsOnlyKeys("s2");
+    }
+
+    static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    static Message<byte[]> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    static Message<byte[]> message(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class FrameDiagnosticsTests {
+
+    private final List<String> written = new CopyOnWriteArrayList<>();
+    private FrameDiagnostics diagnostics;
+
+    @AfterEach
+    void stop() {
+        diagnostics.stop();
+    }
+
+    @Test
+    void samplesByLongestPrefixAndCountsWhatIsSampledOutOrDropped() {
+        diagnostics = new FrameDiagnostics(new DiagnosticsProperties(true, 1.0,
+                Map.of("/topic", 0.0, "/topic/user", 1.0), 2, Duration.ofMinutes(1)));
+
+        assertThat(diagnostics.sample("/app/chat")).isTrue();
+        assertThat(diagnostics.sample(null)).isTrue();
+        assertThat(diagnostics.sample("/topic/user/🐱")).isTrue();
+        assertThat(diagnostics.sample("/topic/messages")).isFalse();
+        assertThat(diagnostics.sampledCount()).isEqualTo(3);
+        assertThat(diagnostics.sampledOutCount()).isEqualTo(1);
+
+        // not started yet, so nothing drains the queue
+        for (int i = 0; i < 3; i++) {
+            String event = "event-" + i;
+            diagnostics.submit(() -> written.add(event));
+        }
+        assertThat(diagnostics.droppedCount()).isEqualTo(1);
+
+        diagnostics.start();
+        await().atMost(Duration.ofSeconds(5)).until(() -> written.size() == 2);
+        assertThat(written).containsExactly("event-0", "event-1");
+    }
+
+    @Test
+    void anIdleWriterIsWokenByTheNextEvent() throws InterruptedException {
+        diagnostics = new FrameDiagnostics(new DiagnosticsProperties(true, 1.0, Map.of(), 16, Duration.ofMinutes(1)));
+        diagnostics.start();
+
+        for (int i = 0; i < 3; i++) {
+            String event = "event-" + i;
+            Thread.sleep(50); // time for the writer to park, so the event has to wake it
+            diagnostics.submit(() -> written.add(event));
+            await().atMost(Duration.ofSeconds(2)).until(() -> written.contains(event));
+        }
+    }
+
+    @Test
+    void disabledDiagnosticsSampleNothingAndStartNoWriter() {
+        diagnostics = new FrameDiagnostics(new DiagnosticsProperties(false, 1.0, Map.of(), 16, Duration.ofMinutes(1)));
+        diagnostics.start();
+
+        assertThat(diagnostics.isRunning()).isFalse();
+        assertThat(diagnostics.sample("/app/chat")).isFalse();
+        diagnostics.submit(() -> written.add("event"));
+        assertThat(diagnostics.sampledCount()).isZero();
+        assertThat(diagnostics.sampledOutCount()).isZero();
+        assertThat(diagnostics.droppedCount()).isZero();
+        assertThat(written).isEmpty();
+    }
+}
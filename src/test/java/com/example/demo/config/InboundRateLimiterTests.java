@@ -0,0 +1,83 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InboundRateLimiterTests {
+
+    private static final String SEND = "/app/message/send";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> notices = new ArrayList<>();
+    private final InboundRateLimiter limiter = new InboundRateLimiter(
+            new RateLimitProperties(true, Map.of(SEND, new RateLimitProperties.Rule(0.001, 3, 0.001, 5))),
+            meterRegistry,
+            sessionId -> "🐱",
+            (sessionId, destination) -> notices.add(sessionId + " " + destination));
+
+    @Test
+    void throttlesPerSessionThenPerUserAndNotifiesOnce() {
+        assertThat(accepted("s1", SEND, 10)).isEqualTo(3);
+        assertThat(accepted("s2", SEND, 10)).isEqualTo(2);
+        assertThat(accepted("s1", "/app/settings/send-here", 10)).isEqualTo(10);
+
+        // s2 runs into the user budget first and, since refused frames cost it nothing, stays there
+        assertThat(meterRegistry.get("stomp.inbound.throttled").tag("scope", "session").counter().count()).isEqualTo(7);
+        assertThat(meterRegistry.get("stomp.inbound.throttled").tag("scope", "user").counter().count()).isEqualTo(8);
+        assertThat(notices).containsExactly("s1 " + SEND, "s2 " + SEND);
+    }
+
+    @Test
+    void disconnectForgetsTheSessionBuckets() {
+        assertThat(accepted("s1", SEND, 10)).isEqualTo(3);
+        limiter.preSend(frame(SimpMessageType.DISCONNECT, "s1", null), null);
+
+        assertThat(accepted("s1", SEND, 10)).isEqualTo(2);
+    }
+
+    @Test
+    void aFrameRefusedForItsUserLeavesTheSessionBudgetAlone() {
+        Map<String, String> users = new HashMap<>(Map.of("s1", "🐱", "s2", "🐱"));
+        InboundRateLimiter limiter = new InboundRateLimiter(
+                new RateLimitProperties(true, Map.of(SEND, new RateLimitProperties.Rule(0.001, 2, 0.001, 3))),
+                meterRegistry, users::get, (sessionId, destination) -> notices.add(sessionId + " " + destination));
+        assertThat(accepted(limiter, "s1", SEND, 2)).isEqualTo(2);
+        assertThat(accepted(limiter, "s2", SEND, 2)).isEqualTo(1);
+
+        // s2 re-registers as a user with budget left; its session still has one frame
+        users.put("s2", "🐶");
+        assertThat(accepted(limiter, "s2", SEND, 3)).isEqualTo(1);
+
+        assertThat(meterRegistry.get("stomp.inbound.throttled").tag("scope", "user").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("stomp.inbound.throttled").tag("scope", "session").counter().count()).isEqualTo(2);
+    }
+
+    private long accepted(String sessionId, String destination, int frames) {
+        return accepted(limiter, sessionId, destination, frames);
+    }
+
+    private static long accepted(InboundRateLimiter limiter, String sessionId, String destination, int frames) {
+        return IntStream.range(0, frames)
+                .filter(i -> limiter.preSend(frame(SimpMessageType.MESSAGE, sessionId, destination), null) != null)
+                .count();
+    }
+
+    private static Message<byte[]> frame(SimpMessageType type, String sessionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
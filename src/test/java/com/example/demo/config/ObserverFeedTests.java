@@ -0,0 +1,138 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.OnlineUsersPayload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObserverFeedTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void framesEachBroadcastOnceAndQueuesItWhileTheSocketIsBusy() throws Exception {
+        ObserverFeed feed = feed(ObserverProperties.Overflow.DROP, 8);
+        StubOutputStream fast = new StubOutputStream();
+        StubOutputStream slow = new StubOutputStream();
+        ObserverFeed.Observer fastObserver = subscribe(feed, fast);
+        ObserverFeed.Observer slowObserver = subscribe(feed, slow);
+        slow.ready = false;
+
+        feed.preSend(publication("/topic/messages", "{\"content\":\"a\"}"), null);
+        feed.preSend(publication("/topic/settings/global", "{\"value\":\"b\"}"), null);
+        feed.preSend(publication("/topic/online", "{\"version\":2}"), null);
+
+        assertThat(fast.text()).isEqualTo("""
+                retry: 3000
+
+                event: online
+                data: {"users":[],"version":0}
+
+                event: message
+                data: {"content":"a"}
+
+                event: online
+                data: {"version":2}
+
+                """);
+        assertThat(fast.flushes).isPositive();
+        assertThat(slowObserver.queued()).isEqualTo(2);
+        assertThat(fastObserver.queued()).isZero();
+
+        slow.ready = true;
+        slowObserver.onWritePossible();
+        assertThat(slow.text()).isEqualTo(fast.text());
+        assertThat(slowObserver.queued()).isZero();
+    }
+
+    @Test
+    void dropsWhatDoesNotFitOrDisconnectsDependingOnThePolicy() throws Exception {
+        ObserverFeed dropping = feed(ObserverProperties.Overflow.DROP, 3);
+        StubOutputStream behind = new StubOutputStream();
+        ObserverFeed.Observer kept = subscribe(dropping, behind);
+        behind.ready = false;
+        for (int i = 0; i < 5; i++) {
+            dropping.preSend(publication("/topic/messages", "{}"), null);
+        }
+        assertThat(kept.queued()).isEqualTo(3);
+        assertThat(dropping.size()).isEqualTo(1);
+        assertThat(meterRegistry.get("chat.observer.dropped").counter().count()).isEqualTo(2);
+        dropping.bindTo(meterRegistry);
+        assertThat(meterRegistry.get("chat.observer.watchers").gauge().value()).isEqualTo(1);
+
+        ObserverFeed disconnecting = feed(ObserverProperties.Overflow.DISCONNECT, 3);
+        StubOutputStream stuck = new StubOutputStream();
+        subscribe(disconnecting, stuck);
+        stuck.ready = false;
+        for (int i = 0; i < 5; i++) {
+            disconnecting.preSend(publication("/topic/messages", "{}"), null);
+        }
+        assertThat(stuck.closed).isTrue();
+        assertThat(disconnecting.size()).isZero();
+        assertThat(meterRegistry.get("chat.observer.evicted").counter().count()).isEqualTo(1);
+    }
+
+    private ObserverFeed feed(ObserverProperties.Overflow overflow, int queueCapacity) {
+        ObserverFeed feed = new ObserverFeed(new ObserverProperties(true, "/observe", queueCapacity, overflow, Duration.ofSeconds(3)),
+                new ObjectMapper(), meterRegistry, () -> new OnlineUsersPayload(List.of(), 0));
+        feed.start();
+        return feed;
+    }
+
+    private static ObserverFeed.Observer subscribe(ObserverFeed feed, StubOutputStream out) throws Exception {
+        ObserverFeed.Observer observer = feed.observer(out, () -> out.closed = true);
+        out.setWriteListener(observer);
+        feed.subscribe(observer);
+        return observer;
+    }
+
+    private static Message<byte[]> publication(String destination, String json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(json.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+
+    private static final class StubOutputStream extends ServletOutputStream {
+
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private boolean ready = true;
+        private boolean closed;
+        private int flushes;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+        }
+
+        @Override
+        public void write(int b) {
+            written.write(b);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        String text() {
+            return written.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
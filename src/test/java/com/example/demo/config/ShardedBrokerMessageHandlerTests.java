@@ -0,0 +1,194 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static com.example.demo.config.ExactMatchSubscriptionRegistryTests.subscribe;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class ShardedBrokerMessageHandlerTests {
+
+    private static final int SESSIONS = 16;
+    private static final int BROADCASTS = 200;
+
+    private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final Map<String, List<String>> received = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> threads = new ConcurrentHashMap<>();
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch deliveryStarted = new CountDownLatch(1);
+    private volatile CountDownLatch gate = new CountDownLatch(0);
+    private ShardedBrokerMessageHandler broker = broker(4, 10_000, ShardedBrokerMessageHandler.Overflow.BLOCK);
+
+    ShardedBrokerMessageHandlerTests() {
+        clientOutbound.subscribe(message -> {
+            if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                deliveryStarted.countDown();
+                awaitQuietly(gate);
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                received.computeIfAbsent(sessionId, id -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+                threads.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet()).add(Thread.currentThread().getName());
+            }
+        });
+        broker.start();
+    }
+
+    @AfterEach
+    void stop() {
+        gate.countDown();
+        broker.stop();
+    }
+
+    @Test
+    void everySessionGetsEveryBroadcastInPublishOrderFromItsOwnShard() {
+        for (int i = 0; i < SESSIONS; i++) {
+            clientInbound.send(connect("s" + i));
+            clientInbound.send(subscribe("s" + i, "0", "/topic/messages"));
+        }
+        List<String> published = IntStream.range(0, BROADCASTS).mapToObj(Integer::toString).toList();
+        published.forEach(payload -> brokerChannel.send(publication("/topic/messages", payload)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.values().stream().mapToInt(List::size).sum() == SESSIONS * BROADCASTS);
+        Set<Integer> shardsUsed = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < SESSIONS; i++) {
+            String sessionId = "s" + i;
+            assertThat(received.get(sessionId)).isEqualTo(published);
+            assertThat(threads.get(sessionId)).containsExactly("broker-shard-" + broker.shardOf(sessionId));
+            shardsUsed.add(broker.shardOf(sessionId));
+        }
+        assertThat(shardsUsed).hasSize(broker.shardCount());
+        // one sample per publication, however many shards it went through
+        DistributionSummary fanOut = meterRegistry.get("stomp.broker.fanout").tag("family", "messages").summary();
+        await().atMost(Duration.ofSeconds(5)).until(() -> fanOut.count() == BROADCASTS);
+        assertThat(fanOut.totalAmount()).isEqualTo(SESSIONS * BROADCASTS);
+        assertThat(fanOut.max()).isEqualTo(SESSIONS);
+    }
+
+    @Test
+    void disconnectRemovesTheSessionFromItsShard() {
+        clientInbound.send(connect("s1"));
+        clientInbound.send(subscribe("s1", "0", "/topic/online"));
+        clientInbound.send(connect("s2"));
+        clientInbound.send(subscribe("s2", "0", "/topic/online"));
+        clientInbound.send(disconnect("s1"));
+        brokerChannel.send(publication("/topic/online", "after"));
+        brokerChannel.send(publication("/app/ignored", "outside the broker prefix"));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.containsKey("s2"));
+        stop();
+        assertThat(received).containsOnlyKeys("s2");
+        assertThat(received.get("s2")).containsExactly("after");
+    }
+
+    @Test
+    void aFullShardDropsPublicationsWhenConfiguredTo() throws Exception {
+        useSingleShard(ShardedBrokerMessageHandler.Overflow.DROP);
+
+        brokerChannel.send(publication("/topic/messages", "0"));
+        assertThat(deliveryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 3; i++) {
+            brokerChannel.send(publication("/topic/messages", Integer.toString(i)));
+        }
+        gate.countDown();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.containsKey("s1") && received.get("s1").size() == 2);
+        assertThat(received.get("s1")).containsExactly("0", "1");
+        assertThat(meterRegistry.get("stomp.broker.shard.dropped").counter().count()).isEqualTo(2);
+        // dropped publications still count, as reaching nobody
+        DistributionSummary fanOut = meterRegistry.get("stomp.broker.fanout").tag("family", "messages").summary();
+        await().atMost(Duration.ofSeconds(5)).until(() -> fanOut.count() == 4);
+        assertThat(fanOut.totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    void aFullShardMakesThePublisherWaitByDefault() throws Exception {
+        useSingleShard(ShardedBrokerMessageHandler.Overflow.BLOCK);
+
+        brokerChannel.send(publication("/topic/messages", "0"));
+        assertThat(deliveryStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        // the SUBSCRIBE may have waited behind the CONNECT
+        double waitedBefore = meterRegistry.get("stomp.broker.shard.waited").counter().count();
+        brokerChannel.send(publication("/topic/messages", "1"));
+        Thread publisher = new Thread(() -> brokerChannel.send(publication("/topic/messages", "2")));
+        publisher.start();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> meterRegistry.get("stomp.broker.shard.waited").counter().count() == waitedBefore + 1);
+        assertThat(publisher.isAlive()).isTrue();
+
+        gate.countDown();
+        publisher.join(5_000);
+        await().atMost(Duration.ofSeconds(5)).until(() -> received.get("s1").size() == 3);
+        assertThat(received.get("s1")).containsExactly("0", "1", "2");
+        assertThat(meterRegistry.get("stomp.broker.shard.dropped").counter().count()).isZero();
+    }
+
+    /**
+     * Swaps in a one-shard broker whose queue holds a single message, with deliveries held at the gate, and
+     * subscribes session s1 to {@code /topic/messages} on it.
+     */
+    private void useSingleShard(ShardedBrokerMessageHandler.Overflow overflow) {
+        broker.stop();
+        gate = new CountDownLatch(1);
+        meterRegistry = new SimpleMeterRegistry();
+        broker = broker(1, 1, overflow);
+        broker.start();
+        clientInbound.send(connect("s1"));
+        clientInbound.send(subscribe("s1", "0", "/topic/messages"));
+        // session frames always wait for room, so once the queue is empty the subscription is taken
+        await().atMost(Duration.ofSeconds(5)).until(() -> meterRegistry.get("stomp.broker.shard.pending").gauge().value() == 0);
+    }
+
+    private ShardedBrokerMessageHandler broker(int shards, int queueCapacity, ShardedBrokerMessageHandler.Overflow overflow) {
+        return new ShardedBrokerMessageHandler(new SimpleBrokerMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic")),
+                shards, queueCapacity, overflow, ExactMatchSubscriptionRegistry::new, meterRegistry);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Message<byte[]> connect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> disconnect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> publication(String destination, String payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
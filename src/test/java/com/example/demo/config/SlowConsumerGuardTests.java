@@ -0,0 +1,118 @@
+package com.example.demo.config;
+
+import com.example.demo.chat.dto.EncodedChatMessage;
+import com.example.demo.chat.model.ChatMessage;
+import com.example.demo.chat.model.MessageIds;
+import com.example.demo.chat.model.MessageSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlowConsumerGuardTests {
+
+    private static final MessageIds IDS = new MessageIds(0);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch writeReleased = new CountDownLatch(1);
+    private final AtomicReference<CloseStatus> closed = new AtomicReference<>();
+    private final AtomicReference<WebSocketSession> tracked = new AtomicReference<>();
+
+    @Test
+    void dropsOnlyScheduledMessagesWhileAWriteIsStalled() throws Exception {
+        SlowConsumerGuard guard = guard(OutboundProperties.Overflow.DROP);
+        Message<?> scheduled = frame("s1", ChatMessage.broadcast(IDS, "SYSTEM", "🍇", MessageSource.SYSTEM_BROADCAST));
+        Message<?> userMessage = frame("s1", ChatMessage.broadcast(IDS, "🐱", "🍇", MessageSource.USER_MESSAGE));
+        assertThat(guard.preSend(scheduled, null)).isSameAs(scheduled);
+
+        CompletableFuture<Void> write = stallWrite();
+        try {
+            assertThat(guard.preSend(scheduled, null)).isNull();
+            assertThat(guard.preSend(userMessage, null)).isSameAs(userMessage);
+            assertThat(meterRegistry.get("stomp.outbound.dropped").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("stomp.outbound.slow.sessions").gauge().value()).isEqualTo(1);
+        } finally {
+            writeReleased.countDown();
+        }
+        write.get(5, TimeUnit.SECONDS);
+        assertThat(guard.preSend(scheduled, null)).isSameAs(scheduled);
+    }
+
+    @Test
+    void disconnectModeClosesTheSlowSession() throws Exception {
+        SlowConsumerGuard guard = guard(OutboundProperties.Overflow.DISCONNECT);
+        CompletableFuture<Void> write = stallWrite();
+        try {
+            assertThat(guard.preSend(frame("s1", ChatMessage.broadcast(IDS, "🐱", "🍇", MessageSource.USER_MESSAGE)), null)).isNull();
+            assertThat(closed.get()).isEqualTo(CloseStatus.SESSION_NOT_RELIABLE);
+            assertThat(meterRegistry.get("stomp.outbound.slow.disconnects").counter().count()).isEqualTo(1);
+        } finally {
+            writeReleased.countDown();
+        }
+        write.get(5, TimeUnit.SECONDS);
+    }
+
+    private SlowConsumerGuard guard(OutboundProperties.Overflow overflow) throws Exception {
+        SlowConsumerGuard guard = new SlowConsumerGuard(
+                new OutboundProperties(DataSize.ofKilobytes(512), Duration.ofSeconds(10), Duration.ofMillis(20), overflow), meterRegistry);
+        guard.decorate(new AbstractWebSocketHandler() {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) {
+                tracked.set(session);
+            }
+        }).afterConnectionEstablished(rawSession("s1"));
+        return guard;
+    }
+
+    private CompletableFuture<Void> stallWrite() throws InterruptedException {
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> {
+            try {
+                tracked.get().sendMessage(new TextMessage("frame"));
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        Thread.sleep(100);
+        return write;
+    }
+
+    private WebSocketSession rawSession(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "sendMessage" -> {
+                        writeReleased.await(5, TimeUnit.SECONDS);
+                        yield null;
+                    }
+                    case "close" -> {
+                        closed.set(args == null ? CloseStatus.NORMAL : (CloseStatus) args[0]);
+                        yield null;
+                    }
+                    case "isOpen" -> closed.get() == null;
+                    default -> null;
+                });
+    }
+
+    private static Message<byte[]> frame(String sessionId, ChatMessage message) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setHeader(EncodedChatMessage.HEADER, new EncodedChatMessage(message, "{}"));
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
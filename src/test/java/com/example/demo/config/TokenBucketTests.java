@@ -0,0 +1,26 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsABurstThenRefillsAtTheRate() {
+        TokenBucket bucket = new TokenBucket(2, 4, 0);
+
+        assertThat(IntStream.range(0, 10).filter(i -> bucket.tryAcquire(0)).count()).isEqualTo(4);
+        assertThat(bucket.tryAcquire(SECOND / 4)).isFalse();
+        assertThat(bucket.tryAcquire(SECOND / 2)).isTrue();
+        assertThat(bucket.tryAcquire(SECOND / 2)).isFalse();
+
+        long later = 10 * SECOND;
+        assertThat(IntStream.range(0, 10).filter(i -> bucket.tryAcquire(later)).count()).isEqualTo(4);
+    }
+}